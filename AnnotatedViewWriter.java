@@ -0,0 +1,228 @@
+/**
+ * Writes the annotated view (see RefinedFeedback.getAnnotatedView()) directly to a Writer, PrintStream, StringBuilder, etc.
+ * The text is walked once: uppercasing matches, adding pilcrows before newlines and escaping backslashes (for codePost) are all done
+ * as each character is copied into a reusable buffer, so no intermediate strings are made for the segments of the text.
+ * For a truncated output (see BoundedInput.TruncatedText), the message about the omitted bytes is written where they were.
+ * @author Hyrum D. Carroll
+ * @version 1.0, (Oct 17, 2026)
+ */
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.Locale;
+
+public class AnnotatedViewWriter{
+
+    public final static int BUFFER_SIZE = 8192;
+
+    private final Appendable out;
+    private final boolean escapeBackslashes;
+    private final char[] buffer = new char[ BUFFER_SIZE ];
+    private int bufferLength = 0;
+    private final boolean asciiUppercase; // true if uppercasing US-ASCII letters in the default locale is just A-Z (e.g., not Turkish)
+    private CharSequence elisionText = null; // text being written if it is truncated and its elision message has not been written yet
+
+    /**
+     * @param out Where to write the annotated view
+     * @param escapeBackslashes true to write each \ as \\ (codePost does not display output if it has an unescaped \ in it)
+     */
+    public AnnotatedViewWriter( Appendable out, boolean escapeBackslashes ){
+        this.out = out;
+        this.escapeBackslashes = escapeBackslashes;
+        String language = Locale.getDefault().getLanguage();
+        this.asciiUppercase = ! ( language.equals("tr") || language.equals("az") );
+    }
+
+    /**
+     * Writes the annotated view (matches indicated with UPPERCASE letters and flanked by ***)
+     * @param regexes Ordered list of regular expressions
+     * @param text Text to look for matches in (e.g., output of a student's submission)
+     * @param indices First and last indices of matches of the regular expressions in regexes in text
+     * @param answerKeyMatches Matches for the regexes from the answer key (for displaying if the regex is not found in the text)
+     */
+    public void write( String[] regexes, CharSequence text, int[][] indices, String[] answerKeyMatches ) throws IOException{
+        write( regexes, text, indices, answerKeyMatches, null );
+    }
+
+    /**
+     * Writes the annotated view (matches indicated with UPPERCASE letters and flanked by ***) with a suggestion for each missing regex (if any)
+     * @param regexes Ordered list of regular expressions
+     * @param text Text to look for matches in (e.g., output of a student's submission)
+     * @param indices First and last indices of matches of the regular expressions in regexes in text
+     * @param answerKeyMatches Matches for the regexes from the answer key (for displaying if the regex is not found in the text)
+     * @param suggestions First and last indices in text of the closest text to each missing regex (see ApproximateMatcher.findSuggestions()), or null for none
+     */
+    public void write( String[] regexes, CharSequence text, int[][] indices, String[] answerKeyMatches, int[][] suggestions ) throws IOException{
+        assert regexes.length == indices.length : "Number of regexes + ("+regexes.length+ ") differs from the number of indices of those matches ("+indices.length+")";
+
+        // Figure out if 1) there are no matches, 2) at least one or 3) everything matches
+        int numMatches = RefinedFeedback.getNumMatches( indices );
+
+        if( numMatches == indices.length ){
+            // found all matches :)
+            write( "\n" ); write( RefinedFeedback.ALL_MATCHES_FOUND_MSG ); write( "\n" );
+        }
+        write( "\nAnnotated Matches View (" ); write( Integer.toString( numMatches ) ); write( " of " ); write( Integer.toString( indices.length ) ); write( " matches found)\n" );
+        write( "(Matches are uppercased and indicated with *** before and after the match)\n" );
+        write( "(Terms that are missing are identified with '<<< Missing: [the missing item] >>>')\n" );
+        write( "==========================================================================\n" );
+
+        elisionText = ( BoundedInput.getElisionIndex( text ) >= 0 ) ? text : null;
+        int textEndIndex = -1;      // index of the last character in text that matched the last matching regex
+        int firstMissingI = -1;     // first of the (consecutive) missing regexes that have not been written yet (-1 if none)
+        int lastMissingI = -1;
+        for(int regexI = 0; regexI < regexes.length; ++regexI){
+            int textStartIndex = indices[regexI][0]; // index of the first character in text that matches regex
+
+            if( textStartIndex < 0 ){
+                // no match found for this regex (or any of the regexes right after it)
+                firstMissingI = regexI;
+                while( regexI + 1 < regexes.length && indices[regexI + 1][0] < 0){
+                    ++regexI;
+                }
+                lastMissingI = regexI;
+            }else{
+                // copy of text before this match (if any) (and add in pilcrow to visualize the newline)
+                writeText( text, textEndIndex + 1, textStartIndex, false, true );
+                // add in lines about missed matches, if any
+                if( firstMissingI >= 0 ){
+                    writeMissing( regexes, text, indices, answerKeyMatches, suggestions, firstMissingI, lastMissingI );
+                    firstMissingI = -1;
+                }
+                textEndIndex = indices[regexI][1]; // only update if there was a match so that it is the last matched index
+                write( RefinedFeedback.FLANKING_STR );
+                writeText( text, textStartIndex, textEndIndex + 1, true, true ); // capitalized match
+                write( RefinedFeedback.FLANKING_STR );
+            }
+            if( RefinedFeedback.DEBUG ){
+                RefinedFeedback.DEBUG( "regex " + regexI + " indices: " + Arrays.toString( indices[regexI] ) );
+            }
+        }
+        writeText( text, textEndIndex + 1, text.length(), false, false ); // copy of output until the end
+        writeElision( text.length() ); // (if the tail is empty)
+        if( firstMissingI >= 0 ){
+            writeMissing( regexes, text, indices, answerKeyMatches, suggestions, firstMissingI, lastMissingI );
+        }
+        flush();
+    }
+
+    /**
+     * Writes the lines for the consecutive missing regexes from firstMissingI to lastMissingI
+     */
+    private void writeMissing( String[] regexes, CharSequence text, int[][] indices, String[] answerKeyMatches, int[][] suggestions, int firstMissingI, int lastMissingI ) throws IOException{
+        if( firstMissingI != 0 ){
+            write( "\n" );
+        }
+        for( int regexI = firstMissingI; regexI <= lastMissingI; ++regexI){
+            write( "\n<<< " ); write( RefinedFeedback.getMissingLabel( indices[regexI] ) ); write( ": " ); write( answerKeyMatches[regexI] );
+            if( suggestions != null && suggestions[regexI] != null ){
+                // on the same line, so newlines are only shown as pilcrows
+                write( " (did you mean \"" );
+                for( int i = suggestions[regexI][0]; i <= suggestions[regexI][1]; ++i){
+                    if( text.charAt(i) == '\n' ){
+                        write( RefinedFeedback.PARAGRAPH_SYMBOL );
+                    }else{
+                        write( text.charAt(i) );
+                    }
+                }
+                write( "\"?)" );
+            }
+            if( RefinedFeedback.DEBUG ){
+                write( " (" ); write( regexes[regexI] ); write( ")" );
+            }
+            write( " >>>\n" );
+        }
+        write( "\n" );
+    }
+
+    /**
+     * Copies part of text
+     * @param text Text to copy from
+     * @param start Index of the first character to copy
+     * @param end Index after the last character to copy
+     * @param uppercase true to uppercase the characters (the same as String.toUpperCase())
+     * @param pilcrows true to add a pilcrow before each newline
+     */
+    private void writeText( CharSequence text, int start, int end, boolean uppercase, boolean pilcrows ) throws IOException{
+        boolean match = uppercase; // (matches never include the omitted bytes)
+        if( uppercase && ! ( asciiUppercase && isAscii( text, start, end ) ) ){
+            // uppercasing can change the number of characters (e.g., for German's sharp s), so let String do it
+            text = text.subSequence( start, end ).toString().toUpperCase();
+            start = 0;
+            end = text.length();
+            uppercase = false;
+        }
+        for( int i = start; i < end; ++i){
+            if( ! match ){
+                writeElision( i );
+            }
+            char c = text.charAt(i);
+            if( uppercase && c >= 'a' && c <= 'z' ){
+                c = (char) ( c - ('a' - 'A') );
+            }else if( c == '\n' && pilcrows ){
+                write( RefinedFeedback.PARAGRAPH_SYMBOL );
+            }
+            write( c );
+        }
+        if( ! match ){
+            writeElision( end ); // (before a match that starts right after the omitted bytes)
+        }
+    }
+
+    /**
+     * Writes the message about the bytes omitted from a truncated text if they were at index (and it has not been written yet)
+     */
+    private void writeElision( int index ) throws IOException{
+        if( elisionText != null && BoundedInput.getElisionIndex( elisionText ) == index ){
+            write( BoundedInput.getElisionMessage( ((BoundedInput.TruncatedText) elisionText).getOmittedBytes() ) );
+            elisionText = null;
+        }
+    }
+
+    private static boolean isAscii( CharSequence text, int start, int end ){
+        for( int i = start; i < end; ++i){
+            if( text.charAt(i) >= 128 ){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void write( String str ) throws IOException{
+        for( int i = 0; i < str.length(); ++i){
+            write( str.charAt(i) );
+        }
+    }
+
+    private void write( char c ) throws IOException{
+        if( bufferLength + 2 > buffer.length ){
+            flushBuffer();
+        }
+        if( c == '\\' && escapeBackslashes ){
+            buffer[ bufferLength++ ] = '\\';
+        }
+        buffer[ bufferLength++ ] = c;
+    }
+
+    private void flushBuffer() throws IOException{
+        if( out instanceof StringBuilder ){
+            ((StringBuilder) out).append( buffer, 0, bufferLength );
+        }else if( out instanceof Writer ){
+            ((Writer) out).write( buffer, 0, bufferLength );
+        }else{
+            out.append( CharBuffer.wrap( buffer, 0, bufferLength ) );
+        }
+        bufferLength = 0;
+    }
+
+    /**
+     * Writes anything that is buffered to out (but does not flush out itself)
+     */
+    public void flush() throws IOException{
+        if( bufferLength > 0 ){
+            flushBuffer();
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/**
+ * Finds the substring of a text that is closest to a literal (i.e., with the fewest insertions, deletions and substitutions),
+ * e.g., "univrese" for "universe", so that a missing item can be shown with a "did you mean" suggestion.
+ * Uses Myers' bit-parallel algorithm (one 64-bit word for the whole literal), so each search takes O(n) time for a text of length n.
+ * Just like LiteralPattern, only US-ASCII letters are matched without regard to case (if ignoreCase).
+ * Instances are immutable and thread-safe.
+ * @author Hyrum D. Carroll
+ * @version 1.0, (Oct 17, 2026)
+ */
+
+import java.util.regex.Pattern;
+
+public class ApproximateMatcher{
+
+    public final static int MAX_LITERAL_LENGTH = 64; // number of bits in a word
+    public final static int MAX_TIES = 16;           // number of substrings (with the same edit distance) compared by length
+
+    private final String literal;
+    private final boolean ignoreCase;
+    private final char[] pattern;        // literal (case-folded if ignoreCase)
+    private final long[] asciiMasks;     // bit i is set for each US-ASCII character that is pattern[i]
+    private final long[] reversedAsciiMasks; // same, but for the reversed pattern
+
+    /**
+     * @param literal Text to find (at most MAX_LITERAL_LENGTH characters)
+     * @param ignoreCase true to match US-ASCII letters without regard to case
+     */
+    public ApproximateMatcher( String literal, boolean ignoreCase ){
+        if( literal.length() == 0 || literal.length() > MAX_LITERAL_LENGTH ){
+            throw new IllegalArgumentException("Literal must have 1 to " + MAX_LITERAL_LENGTH + " characters (not " + literal.length() + ")");
+        }
+        this.literal = literal;
+        this.ignoreCase = ignoreCase;
+        this.pattern = new char[ literal.length() ];
+        this.asciiMasks = new long[128];
+        this.reversedAsciiMasks = new long[128];
+        for( int i = 0; i < pattern.length; ++i){
+            pattern[i] = fold( literal.charAt(i) );
+            if( pattern[i] < 128 ){
+                asciiMasks[ pattern[i] ] |= 1L << i;
+                reversedAsciiMasks[ pattern[i] ] |= 1L << (pattern.length - 1 - i);
+            }
+        }
+    }
+
+    /**
+     * @return The literal that is searched for
+     */
+    public String getLiteral(){
+        return literal;
+    }
+
+    /**
+     * Finds the substring of text[start, end) with the smallest edit distance to the literal
+     * (if there is a tie, then the one closest in length to the literal among the first MAX_TIES of them)
+     * @param text Text to search
+     * @param start Index of the first character to search
+     * @param end Index after the last character to search
+     * @param maxDistance Maximum edit distance
+     * @return The indices of the first and last characters of the substring and its edit distance (or null if none are within maxDistance)
+     */
+    public int[] findClosest( CharSequence text, int start, int end, int maxDistance ){
+        int m = pattern.length;
+        long lastBit = 1L << (m - 1);
+
+        // forward pass: the edit distance of the best substring ending at each index (any start)
+        long pv = -1L;
+        long mv = 0;
+        int distance = m;
+        int bestDistance = maxDistance + 1;
+        int[] bestEnds = new int[ MAX_TIES ];
+        int numBestEnds = 0;
+        for( int j = start; j < end; ++j){
+            long eq = getMask( text.charAt(j), false );
+            long xv = eq | mv;
+            long xh = (((eq & pv) + pv) ^ pv) | eq;
+            long ph = mv | ~(xh | pv);
+            long mh = pv & xh;
+            if( (ph & lastBit) != 0 ){
+                ++distance;
+            }else if( (mh & lastBit) != 0 ){
+                --distance;
+            }
+            ph <<= 1;
+            mh <<= 1;
+            pv = mh | ~(xv | ph);
+            mv = ph & xv;
+            if( distance < bestDistance ){
+                bestDistance = distance;
+                numBestEnds = 0;
+            }
+            if( distance == bestDistance && distance <= maxDistance && numBestEnds < MAX_TIES ){
+                bestEnds[ numBestEnds++ ] = j;
+            }
+        }
+
+        int[] closest = null;
+        for( int i = 0; i < numBestEnds; ++i){
+            int substringStart = findStart( text, start, bestEnds[i], bestDistance );
+            if( closest == null || Math.abs( bestEnds[i] - substringStart + 1 - m ) < Math.abs( closest[1] - closest[0] + 1 - m ) ){
+                closest = new int[]{ substringStart, bestEnds[i], bestDistance };
+            }
+        }
+        return closest;
+    }
+
+    /**
+     * Backward pass (with the reversed literal anchored at substringEnd)
+     * @return The largest index of the start of a substring ending at substringEnd with an edit distance of distance
+     */
+    private int findStart( CharSequence text, int start, int substringEnd, int distance ){
+        int m = pattern.length;
+        long lastBit = 1L << (m - 1);
+        long pv = -1L;
+        long mv = 0;
+        int substringDistance = m;
+        int limit = Math.max( start, substringEnd - m - distance + 1 );
+        for( int j = substringEnd; j >= limit; --j){
+            long eq = getMask( text.charAt(j), true );
+            long xv = eq | mv;
+            long xh = (((eq & pv) + pv) ^ pv) | eq;
+            long ph = mv | ~(xh | pv);
+            long mh = pv & xh;
+            if( (ph & lastBit) != 0 ){
+                ++substringDistance;
+            }else if( (mh & lastBit) != 0 ){
+                --substringDistance;
+            }
+            ph = (ph << 1) | 1; // each character skipped at the anchor is an insertion
+            mh <<= 1;
+            pv = mh | ~(xv | ph);
+            mv = ph & xv;
+            if( substringDistance == distance ){
+                return j;
+            }
+        }
+        return limit; // not reachable (the forward pass found a substring with this distance)
+    }
+
+    /**
+     * @return The bits for the positions of c in the (reversed) pattern
+     */
+    private long getMask( char c, boolean reversed ){
+        c = fold( c );
+        if( c < 128 ){
+            return reversed ? reversedAsciiMasks[c] : asciiMasks[c];
+        }
+        long mask = 0;
+        for( int i = 0; i < pattern.length; ++i){
+            if( pattern[i] == c ){
+                mask |= 1L << ( reversed ? pattern.length - 1 - i : i );
+            }
+        }
+        return mask;
+    }
+
+    private char fold( char c ){
+        if( ignoreCase && c >= 'A' && c <= 'Z' ){
+            return (char) ( c + ('a' - 'A') );
+        }
+        return c;
+    }
+
+    /**
+     * Finds the closest text to each missing literal regex in the part of text where it was expected
+     * (i.e., after the previous match and before the next one).
+     * The edit distance of each suggestion is also limited to less than half of the literal's length (so that short literals are not "found" everywhere).
+     * @param rubric Compiled regexes (with the maximum edit distance, see Rubric.withSuggestions())
+     * @param text Text the regexes were searched for in (e.g., output of a student's submission)
+     * @param indices First and last indices of matches of the regexes in text
+     * @return The first and last indices of the suggestion for each regex (or null if it was matched, is not a literal or nothing is close enough)
+     */
+    public static int[][] findSuggestions( Rubric rubric, CharSequence text, int[][] indices ){
+        int[][] suggestions = new int[ indices.length ][];
+        int maxDistance = rubric.getMaxSuggestionDistance();
+        if( maxDistance == 0 ){
+            return suggestions;
+        }
+        boolean ignoreCase = (rubric.getFlags() & Pattern.CASE_INSENSITIVE) != 0;
+        int regionStart = 0; // after the previous match
+        for(int regexI = 0; regexI < indices.length; ++regexI){
+            if( indices[regexI][0] >= 0 ){
+                regionStart = indices[regexI][1] + 1;
+                continue;
+            }
+            if( indices[regexI][0] == Rubric.TIMED_OUT ){
+                continue;
+            }
+            String literal = LiteralPattern.getLiteral( rubric.getRegex( regexI ) );
+            if( literal == null || literal.length() == 0 || literal.length() > MAX_LITERAL_LENGTH ){
+                continue;
+            }
+            int regionEnd = text.length(); // before the next match
+            for( int nextI = regexI + 1; nextI < indices.length; ++nextI){
+                if( indices[nextI][0] >= 0 ){
+                    regionEnd = indices[nextI][0];
+                    break;
+                }
+            }
+            int distance = Math.min( maxDistance, (literal.length() - 1) / 2 );
+            if( distance > 0 && regionStart < regionEnd ){
+                int[] closest = new ApproximateMatcher( literal, ignoreCase ).findClosest( text, regionStart, regionEnd, distance );
+                if( closest != null ){
+                    suggestions[regexI] = new int[]{ closest[0], closest[1] };
+                }
+            }
+        }
+        return suggestions;
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * Read-only CharSequence over bytes that are all US-ASCII (e.g., a submission's output), so that it can be matched and rendered
+ * without decoding it (i.e., one byte per character instead of two, and no copy of the bytes).
+ * A final newline that is not in the bytes can be added (so that the last line always ends with a line separator, see BoundedInput).
+ * Instances are immutable (as long as the bytes are not changed) and thread-safe.
+ * @author Hyrum D. Carroll
+ * @version 1.0, (Oct 17, 2026)
+ */
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public class AsciiCharSequence implements CharSequence{
+
+    private final ByteBuffer bytes;  // (only absolute gets are used, so the position is never changed)
+    private final byte[] array;      // backing array of bytes (or null, e.g., for a memory-mapped file)
+    private final int offset;        // index in array (or bytes) of the first character
+    private final int numBytes;      // number of characters that are in bytes
+    private final boolean finalNewline; // true if a newline is added after the bytes
+
+    /**
+     * @param bytes US-ASCII bytes (from its position to its limit, see isAscii())
+     * @param finalNewline true to add a newline after the bytes
+     */
+    public AsciiCharSequence( ByteBuffer bytes, boolean finalNewline ){
+        this( bytes, bytes.position(), bytes.remaining(), finalNewline );
+    }
+
+    private AsciiCharSequence( ByteBuffer bytes, int offset, int numBytes, boolean finalNewline ){
+        this.bytes = bytes;
+        this.array = bytes.hasArray() ? bytes.array() : null;
+        this.offset = bytes.hasArray() ? bytes.arrayOffset() + offset : offset;
+        this.numBytes = numBytes;
+        this.finalNewline = finalNewline;
+    }
+
+    /**
+     * @param bytes Bytes to check (from its position to its limit)
+     * @return true if every byte is US-ASCII, none of them are carriage returns (i.e., the line separators do not need to be normalized) and
+     *         none of them would be decoded differently (see BoundedInput)
+     */
+    public static boolean isAscii( ByteBuffer bytes ){
+        int end = bytes.limit();
+        if( bytes.hasArray() ){
+            byte[] array = bytes.array();
+            for( int i = bytes.arrayOffset() + bytes.position(); i < bytes.arrayOffset() + end; ++i){
+                if( array[i] < 0 || array[i] == '\r' ){
+                    return false;
+                }
+            }
+        }else{
+            for( int i = bytes.position(); i < end; ++i){
+                byte b = bytes.get(i);
+                if( b < 0 || b == '\r' ){
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    public int length(){
+        return finalNewline ? numBytes + 1 : numBytes;
+    }
+
+    public char charAt( int index ){
+        if( index < 0 || index >= length() ){
+            throw new IndexOutOfBoundsException("Index " + index + " is out of bounds for length " + length() );
+        }
+        if( index == numBytes ){
+            return '\n';
+        }
+        return (char) ( array != null ? array[ offset + index ] : bytes.get( offset + index ) );
+    }
+
+    public CharSequence subSequence( int start, int end ){
+        if( start < 0 || end > length() || start > end ){
+            throw new IndexOutOfBoundsException("Subsequence [" + start + ", " + end + ") is out of bounds for length " + length() );
+        }
+        int bytesEnd = Math.min( end, numBytes );
+        int bytesStart = Math.min( start, bytesEnd );
+        int bufferOffset = ( array != null ) ? offset - bytes.arrayOffset() : offset;
+        return new AsciiCharSequence( bytes, bufferOffset + bytesStart, bytesEnd - bytesStart, end > numBytes && start <= numBytes );
+    }
+
+    public String toString(){
+        String str;
+        if( array != null ){
+            str = new String( array, offset, numBytes, StandardCharsets.US_ASCII );
+        }else{
+            byte[] copy = new byte[ numBytes ];
+            ByteBuffer view = bytes.duplicate();
+            view.position( offset );
+            view.get( copy );
+            str = new String( copy, StandardCharsets.US_ASCII );
+        }
+        return finalNewline ? str + "\n" : str;
+    }
+}
@@ -0,0 +1,319 @@
+/**
+ * Grades every output file in a directory (e.g., all of the students' submissions for a test case) with the same rubric in a single JVM.
+ * Each submission is graded on a (work-stealing) pool of threads and the feedback for each one is written to its own file (by the thread that graded it).
+ * A summary with the number of matches found for each submission is also written (in filename order, regardless of the number of threads).
+ * The matches found for every submission can also be collected in a MatchTable (e.g., to analyze a whole cohort's results).
+ * @author Hyrum D. Carroll
+ * @version 1.0, (Oct 17, 2026)
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class BatchGrader{
+
+    public final static String FEEDBACK_DIRNAME = "feedback";           // default directory (inside of the batch directory) for the feedback files
+    public final static String FEEDBACK_EXTENSION = ".feedback.txt";    // appended to the name of each submission for its feedback file
+    public final static String JSON_FEEDBACK_EXTENSION = ".feedback.json"; // (for MatchResultWriter.Format.JSON)
+    public final static String BINARY_FEEDBACK_EXTENSION = ".feedback.bin"; // (for MatchResultWriter.Format.BINARY)
+    public final static String SUMMARY_FILENAME = "summary.txt";        // written in the feedback directory
+    public final static String TEMP_EXTENSION = ".tmp";                 // for feedback files that are being written
+
+    private final Rubric rubric;
+    private final String[] answerKeyMatches;
+    private final int threads;
+    private final long maxOutputBytes;
+    private final MatchResultWriter.Format format;
+    private final MatchTable matchTable;
+
+    /**
+     * @param rubric Precompiled regexes (shared by all submissions)
+     * @param answerKeyMatches Matches for the regexes from the answer key (for displaying if the regex is not found in a submission)
+     * @param threads Number of submissions to grade at the same time
+     * @param maxOutputBytes Maximum number of bytes of each submission's output to keep (see BoundedInput)
+     */
+    public BatchGrader( Rubric rubric, String[] answerKeyMatches, int threads, long maxOutputBytes ){
+        this( rubric, answerKeyMatches, threads, maxOutputBytes, MatchResultWriter.Format.TEXT );
+    }
+
+    /**
+     * @param rubric Precompiled regexes (shared by all submissions)
+     * @param answerKeyMatches Matches for the regexes from the answer key (for displaying if the regex is not found in a submission)
+     * @param threads Number of submissions to grade at the same time
+     * @param maxOutputBytes Maximum number of bytes of each submission's output to keep (see BoundedInput)
+     * @param format Format of the feedback files (the annotated view, JSON or binary)
+     */
+    public BatchGrader( Rubric rubric, String[] answerKeyMatches, int threads, long maxOutputBytes, MatchResultWriter.Format format ){
+        this( rubric, answerKeyMatches, threads, maxOutputBytes, format, null );
+    }
+
+    /**
+     * @param rubric Precompiled regexes (shared by all submissions)
+     * @param answerKeyMatches Matches for the regexes from the answer key (for displaying if the regex is not found in a submission)
+     * @param threads Number of submissions to grade at the same time
+     * @param maxOutputBytes Maximum number of bytes of each submission's output to keep (see BoundedInput)
+     * @param format Format of the feedback files (the annotated view, JSON or binary)
+     * @param matchTable Table to add the matches found for each submission to by gradeDirectory() (in filename order), or null
+     */
+    public BatchGrader( Rubric rubric, String[] answerKeyMatches, int threads, long maxOutputBytes, MatchResultWriter.Format format, MatchTable matchTable ){
+        if( threads < 1 ){
+            throw new IllegalArgumentException("Number of threads must be at least 1 (not " + threads + ")");
+        }
+        this.rubric = rubric;
+        this.answerKeyMatches = answerKeyMatches;
+        this.threads = threads;
+        this.maxOutputBytes = maxOutputBytes;
+        this.format = format;
+        this.matchTable = matchTable;
+    }
+
+    /**
+     * Result of grading one submission
+     */
+    public static class Result{
+        public final String filename;
+        public final int numMatches;  // -1 if the submission could not be graded
+        public final int outputLength; // number of characters of output that were searched
+        public final int[][] indices; // first and last indices of the matches (null if the submission could not be graded)
+
+        public Result( String filename, int numMatches ){
+            this( filename, numMatches, 0, null );
+        }
+
+        public Result( String filename, int numMatches, int outputLength, int[][] indices ){
+            this.filename = filename;
+            this.numMatches = numMatches;
+            this.outputLength = outputLength;
+            this.indices = indices;
+        }
+    }
+
+    /**
+     * Grades a single submission and writes its feedback file
+     * (to a temporary file that is then renamed, so that the feedback file is never seen partially written)
+     * @param submissionFile Output of a student's submission
+     * @param feedbackDir Directory to write the feedback file to
+     * @return The number of matches found
+     */
+    public Result grade( File submissionFile, File feedbackDir ){
+        return grade( submissionFile, feedbackDir, true );
+    }
+
+    /**
+     * Grades a single submission and writes its feedback file (see grade( File, File ))
+     * @param submissionFile Output of a student's submission
+     * @param feedbackDir Directory to write the feedback file to
+     * @param memoryMap true to memory-map submissionFile (only if it is not being changed, since a memory-mapped file that is truncated
+     *                  can not be read anymore), false to read it into memory
+     * @return The number of matches found
+     */
+    public Result grade( File submissionFile, File feedbackDir, boolean memoryMap ){
+        try{
+            CharSequence outputStr;
+            if( memoryMap ){
+                outputStr = BoundedInput.read( submissionFile, maxOutputBytes );
+            }else{
+                InputStream submissionIn = new FileInputStream( submissionFile );
+                try{
+                    outputStr = BoundedInput.read( submissionIn, maxOutputBytes );
+                }finally{
+                    submissionIn.close();
+                }
+            }
+            if( rubric.getListener() != null ){
+                rubric.getListener().submissionStarted( submissionFile.getName() );
+            }
+            int[][] indices = rubric.getMatchingIndices( outputStr );
+            File feedbackFile = new File( feedbackDir, submissionFile.getName() + getFeedbackExtension( format ) );
+            File tempFile = File.createTempFile( feedbackFile.getName(), TEMP_EXTENSION, feedbackDir );
+            try{
+                if( format == MatchResultWriter.Format.BINARY ){
+                    OutputStream feedbackOut = new BufferedOutputStream( new FileOutputStream( tempFile ) );
+                    try{
+                        MatchResultWriter.writeBinary( feedbackOut, rubric.getRegexes(), indices, answerKeyMatches );
+                    }finally{
+                        feedbackOut.close();
+                    }
+                }else if( format == MatchResultWriter.Format.JSON ){
+                    Writer feedbackWriter = new BufferedWriter( new OutputStreamWriter( new FileOutputStream( tempFile ), StandardCharsets.UTF_8 ) );
+                    try{
+                        MatchResultWriter.writeJson( feedbackWriter, rubric.getRegexes(), indices, answerKeyMatches, outputStr );
+                        feedbackWriter.write( System.getProperty("line.separator") );
+                    }finally{
+                        feedbackWriter.close();
+                    }
+                }else{
+                    Writer feedbackWriter = new BufferedWriter( new FileWriter( tempFile ) );
+                    try{
+                        RefinedFeedback.writeFeedback( feedbackWriter, rubric, answerKeyMatches, outputStr, indices );
+                        feedbackWriter.write( System.getProperty("line.separator") );
+                    }finally{
+                        feedbackWriter.close();
+                    }
+                }
+                Files.move( tempFile.toPath(), feedbackFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING );
+            }finally{
+                tempFile.delete(); // nothing to delete if it was moved
+            }
+            return new Result( submissionFile.getName(), RefinedFeedback.getNumMatches( indices ), outputStr.length(), indices );
+        }catch( IOException e ){
+            System.err.println("REFINED FEEDBACK ERROR: " + e.getMessage() );
+            return new Result( submissionFile.getName(), -1 );
+        }
+    }
+
+    /**
+     * @param format Format of the feedback files
+     * @return The extension appended to the name of each submission for its feedback file
+     */
+    public static String getFeedbackExtension( MatchResultWriter.Format format ){
+        if( format == MatchResultWriter.Format.BINARY ){
+            return BINARY_FEEDBACK_EXTENSION;
+        }else if( format == MatchResultWriter.Format.JSON ){
+            return JSON_FEEDBACK_EXTENSION;
+        }
+        return FEEDBACK_EXTENSION;
+    }
+
+    /**
+     * @param filename Name of a file
+     * @return true if filename is one that is written by a BatchGrader (i.e., a feedback, temporary or summary file)
+     */
+    public static boolean isGraderFile( String filename ){
+        return filename.endsWith( FEEDBACK_EXTENSION ) || filename.endsWith( JSON_FEEDBACK_EXTENSION ) || filename.endsWith( BINARY_FEEDBACK_EXTENSION )
+            || filename.endsWith( TEMP_EXTENSION ) || filename.equals( SUMMARY_FILENAME );
+    }
+
+    /**
+     * Grades each of the submissions (in parallel)
+     * @param submissionFiles Outputs of students' submissions
+     * @param feedbackDir Directory to write the feedback files to
+     * @return Results in the same order as submissionFiles
+     */
+    public Result[] grade( File[] submissionFiles, final File feedbackDir ){
+        Result[] results = new Result[ submissionFiles.length ];
+        ExecutorService pool = Executors.newWorkStealingPool( threads );
+        try{
+            List<Future<Result>> futures = new ArrayList<Future<Result>>( submissionFiles.length );
+            for( final File submissionFile : submissionFiles ){
+                futures.add( pool.submit( new Callable<Result>(){
+                        public Result call(){
+                            return grade( submissionFile, feedbackDir );
+                        }
+                    }));
+            }
+            for( int i = 0; i < results.length; ++i){
+                try{
+                    results[i] = futures.get(i).get();
+                }catch( ExecutionException e ){
+                    System.err.println("REFINED FEEDBACK ERROR: Unable to grade " + submissionFiles[i] + ": " + e.getCause() );
+                    results[i] = new Result( submissionFiles[i].getName(), -1 );
+                }
+            }
+        }catch( InterruptedException e ){
+            Thread.currentThread().interrupt();
+        }finally{
+            pool.shutdownNow();
+        }
+        return results;
+    }
+
+    /**
+     * Grades every (regular) file in batchDirname and writes the feedback for each one (and a summary) to feedbackDirname
+     * @param batchDirname Directory with the outputs of the students' submissions
+     * @param feedbackDirname Directory to write the feedback files to (if null, then a subdirectory of batchDirname is used)
+     * @return true if every submission was graded and all of the files were written
+     */
+    public boolean gradeDirectory( String batchDirname, String feedbackDirname ){
+        File batchDir = new File( batchDirname );
+        File[] submissionFiles = batchDir.listFiles();
+        if( submissionFiles == null ){
+            System.err.println("REFINED FEEDBACK ERROR: Unable to read directory " + batchDirname );
+            return false;
+        }
+        // sort by filename so that the results are deterministic
+        List<File> regularFiles = new ArrayList<File>();
+        for( File submissionFile : submissionFiles ){
+            if( submissionFile.isFile() ){
+                regularFiles.add( submissionFile );
+            }
+        }
+        submissionFiles = regularFiles.toArray( new File[0] );
+        Arrays.sort( submissionFiles );
+
+        File feedbackDir = ( feedbackDirname != null ) ? new File( feedbackDirname ) : new File( batchDir, FEEDBACK_DIRNAME );
+        if( ! feedbackDir.isDirectory() && ! feedbackDir.mkdirs() ){
+            System.err.println("REFINED FEEDBACK ERROR: Unable to create directory " + feedbackDir );
+            return false;
+        }
+
+        RefinedFeedback.DEBUG( "Grading " + submissionFiles.length + " submissions with " + threads + " threads" );
+        Result[] results = grade( submissionFiles, feedbackDir );
+
+        boolean success = true;
+        for( Result result : results ){
+            if( result.numMatches < 0 ){
+                success = false;
+            }else if( matchTable != null ){
+                matchTable.add( result.filename, result.outputLength, result.indices );
+            }
+        }
+        try{
+            writeSummary( results, new File( feedbackDir, SUMMARY_FILENAME ) );
+        }catch( IOException e ){
+            System.err.println("REFINED FEEDBACK ERROR: " + e.getMessage() );
+            return false;
+        }
+        return success;
+    }
+
+    /**
+     * Writes the number of matches found for each submission (one per line, tab delimited)
+     * @param results Results of grading the submissions
+     * @param summaryFile File to write the summary to
+     */
+    public void writeSummary( Result[] results, File summaryFile ) throws IOException{
+        PrintWriter summaryWriter = new PrintWriter( summaryFile );
+        int numGraded = 0;
+        long totalMatches = 0;
+        for( Result result : results ){
+            if( result.numMatches < 0 ){
+                summaryWriter.println( result.filename + "\tERROR" );
+            }else{
+                summaryWriter.println( result.filename + "\t" + result.numMatches + " of " + rubric.size() + " matches found" );
+                ++numGraded;
+                totalMatches += result.numMatches;
+            }
+        }
+        summaryWriter.println( "Graded " + numGraded + " of " + results.length + " submissions (" + totalMatches + " matches found in total)" );
+        if( Rubric.getTimeoutCount() > 0 ){
+            summaryWriter.println( "Searches that timed out: " + Rubric.getTimeoutCount() );
+        }
+        ResultCache resultCache = rubric.getResultCache();
+        if( resultCache != null ){
+            summaryWriter.println( "Result cache: " + resultCache.getHits() + " hits, " + resultCache.getMisses() + " misses" );
+        }
+        summaryWriter.close();
+    }
+}
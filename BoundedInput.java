@@ -0,0 +1,322 @@
+/**
+ * Reads the output of a submission while keeping at most a fixed number of bytes in memory (e.g., for a submission stuck in an infinite loop).
+ * If the output is larger than the limit, only the beginning (head) and the end (tail) of it are kept (see TruncatedText).
+ * The message about how much was omitted is only shown between them (see AnnotatedViewWriter and MatchResultWriter); it is not part of the text that is searched.
+ * The bytes are read with NIO into a reusable buffer (or memory-mapped for files) and are only decoded once (i.e., no temporary string per line).
+ * Just like RefinedFeedback.getAllInput(), each line ends with the line separator (including the last line).
+ * Output that is entirely US-ASCII (which most console output is) without carriage returns is not decoded at all when it does not need to be changed;
+ * it is matched and rendered directly from its bytes (see AsciiCharSequence), which takes half of the memory of decoded characters.
+ * Those bytes are not copied again: a file's are read straight from its memory mapping and a stream's from the array they were read into
+ * (each byte of a stream is copied once, from the read buffer into the head or the tail, and the tail is copied once more if nothing was omitted, to join it to the head).
+ * @author Hyrum D. Carroll
+ * @version 1.0, (Oct 17, 2026)
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+public class BoundedInput{
+
+    public final static long DEFAULT_MAX_BYTES = 16L * 1024 * 1024; // maximum number of bytes of output to keep (if not specified)
+    public final static int BUFFER_SIZE = 64 * 1024;
+
+    private final static boolean ASCII_COMPATIBLE = isAsciiCompatible( Charset.defaultCharset() ); // true if US-ASCII bytes decode to the same characters
+
+    /**
+     * Head and tail of an output that was too large to keep all of (without anything between them).
+     * The regexes are not matched across the elision (see Rubric), so a match is never made of text from both sides of the omitted bytes.
+     */
+    public static class TruncatedText implements CharSequence{
+        private final CharBuffer chars;
+        private final int elisionIndex;
+        private final long omittedBytes;
+
+        TruncatedText( CharBuffer chars, int elisionIndex, long omittedBytes ){
+            this.chars = chars;
+            this.elisionIndex = elisionIndex;
+            this.omittedBytes = omittedBytes;
+        }
+
+        /**
+         * @return The index of the first character of the tail (i.e., where the omitted bytes were)
+         */
+        public int getElisionIndex(){
+            return elisionIndex;
+        }
+
+        /**
+         * @return The number of bytes that were omitted
+         */
+        public long getOmittedBytes(){
+            return omittedBytes;
+        }
+
+        public char charAt( int index ){
+            return chars.get( index );
+        }
+
+        public int length(){
+            return chars.remaining();
+        }
+
+        public CharSequence subSequence( int start, int end ){
+            return chars.subSequence( start, end );
+        }
+
+        public String toString(){
+            return chars.toString();
+        }
+    }
+
+    /**
+     * @param text Output (e.g., from read())
+     * @return The index in text where bytes were omitted (or -1 if none were)
+     */
+    public static int getElisionIndex( CharSequence text ){
+        return ( text instanceof TruncatedText ) ? ((TruncatedText) text).getElisionIndex() : -1;
+    }
+
+    /**
+     * Message shown between the head and the tail of the output when part of it is omitted
+     * @param omittedBytes Number of bytes that were omitted
+     * @return The message (on its own line)
+     */
+    public static String getElisionMessage( long omittedBytes ){
+        String ls = System.getProperty("line.separator");
+        return ls + "<<< Output truncated: " + omittedBytes + " bytes omitted >>>" + ls;
+    }
+
+    /**
+     * Beginning and end of a stream of bytes
+     */
+    static class Windows{
+        final ByteBuffer head;
+        final ByteBuffer tail;
+        final long omittedBytes;
+
+        Windows( ByteBuffer head, ByteBuffer tail, long omittedBytes ){
+            this.head = head;
+            this.tail = tail;
+            this.omittedBytes = omittedBytes;
+        }
+    }
+
+    /**
+     * Reads all of input, only keeping the first and last maxBytes / 2 bytes
+     */
+    static Windows readWindows( InputStream input, long maxBytes ) throws IOException{
+        int headCapacity = (int) Math.min( maxBytes - maxBytes / 2, Integer.MAX_VALUE - 8 );
+        int tailCapacity = (int) Math.min( maxBytes / 2, Integer.MAX_VALUE - 8 );
+        ReadableByteChannel channel = Channels.newChannel( input );
+        ByteBuffer buffer = ByteBuffer.allocate( BUFFER_SIZE ); // reused for each read
+        byte[] head = new byte[ Math.min( headCapacity, BUFFER_SIZE ) ]; // (grown up to headCapacity, then wrapped without copying it again)
+        int headSize = 0;
+        byte[] tail = null;   // ring buffer (allocated once the head is full)
+        int tailPosition = 0; // next position to write to in tail
+        long totalBytes = 0;
+
+        while( channel.read( buffer ) >= 0 ){
+            buffer.flip();
+            int numRead = buffer.remaining();
+            totalBytes += numRead;
+            byte[] bytes = buffer.array();
+            int offset = 0;
+            if( headSize < headCapacity ){
+                int headBytes = Math.min( numRead, headCapacity - headSize );
+                if( headSize + headBytes > head.length ){
+                    head = Arrays.copyOf( head, (int) Math.min( headCapacity, Math.max( 2L * head.length, headSize + headBytes ) ) );
+                }
+                System.arraycopy( bytes, 0, head, headSize, headBytes );
+                headSize += headBytes;
+                offset = headBytes;
+            }
+            if( offset < numRead && tailCapacity > 0 ){
+                if( tail == null ){
+                    tail = new byte[ tailCapacity ];
+                }
+                for( int i = offset; i < numRead; ){
+                    int length = Math.min( numRead - i, tailCapacity - tailPosition );
+                    System.arraycopy( bytes, i, tail, tailPosition, length );
+                    i += length;
+                    tailPosition = ( tailPosition + length ) % tailCapacity;
+                }
+            }
+            buffer.clear();
+        }
+
+        long tailBytes = Math.min( totalBytes - headSize, tailCapacity );
+        ByteBuffer tailBuffer = ByteBuffer.allocate( (int) tailBytes );
+        if( tailBytes > 0 ){
+            // oldest bytes start at tailPosition if the ring buffer wrapped around
+            int start = ( tailBytes < tailCapacity ) ? 0 : tailPosition;
+            int firstLength = (int) Math.min( tailBytes, tailCapacity - start );
+            tailBuffer.put( tail, start, firstLength );
+            tailBuffer.put( tail, 0, (int) tailBytes - firstLength );
+            tailBuffer.flip();
+        }
+        return new Windows( ByteBuffer.wrap( head, 0, headSize ), tailBuffer, totalBytes - headSize - tailBytes );
+    }
+
+    /**
+     * Decodes windows (see decode( ByteBuffer, ByteBuffer, long ))
+     */
+    static CharSequence decode( Windows windows ){
+        return decode( windows.head, windows.tail, windows.omittedBytes );
+    }
+
+    /**
+     * Reads all of input (e.g., stdin), but only keeps the head and tail if it is more than maxBytes
+     * @param input Input stream (e.g., stdin)
+     * @param maxBytes Maximum number of bytes of input to keep
+     * @return The (possibly truncated, see TruncatedText) input with normalized line separators
+     */
+    public static CharSequence read( InputStream input, long maxBytes ) throws IOException{
+        return decode( readWindows( input, maxBytes ) );
+    }
+
+    /**
+     * Reads all of a file (memory-mapping only the parts of it that are kept)
+     * US-ASCII text is read straight from the mapping (see decode( ByteBuffer, ByteBuffer, long )), so file must not be truncated while the text is being used.
+     * @param file File to be read
+     * @param maxBytes Maximum number of bytes of the file to keep
+     * @return The (possibly truncated, see TruncatedText) contents of file with normalized line separators
+     */
+    public static CharSequence read( File file, long maxBytes ) throws IOException{
+        FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.READ );
+        try{
+            long size = channel.size();
+            if( size <= maxBytes ){
+                return decode( channel.map( FileChannel.MapMode.READ_ONLY, 0, size ), ByteBuffer.allocate(0), 0 );
+            }
+            long headBytes = maxBytes - maxBytes / 2;
+            long tailBytes = maxBytes / 2;
+            ByteBuffer head = channel.map( FileChannel.MapMode.READ_ONLY, 0, headBytes );
+            ByteBuffer tail = channel.map( FileChannel.MapMode.READ_ONLY, size - tailBytes, tailBytes );
+            return decode( head, tail, size - headBytes - tailBytes );
+        }finally{
+            channel.close();
+        }
+    }
+
+    /**
+     * Decodes the head and tail (with the platform's default charset) and normalizes the line separators (just like BufferedReader.readLine())
+     * (US-ASCII bytes that do not need to be changed are used as they are, without copying them, see AsciiCharSequence)
+     */
+    static CharSequence decode( ByteBuffer head, ByteBuffer tail, long omittedBytes ){
+        String ls = System.getProperty("line.separator");
+        if( omittedBytes == 0 && tail.hasRemaining() ){
+            // nothing was omitted, so the head and tail are one stream (and a character or \r\n may be split between them)
+            ByteBuffer joined = ByteBuffer.allocate( head.remaining() + tail.remaining() );
+            joined.put( head.duplicate() ).put( tail.duplicate() ).flip();
+            head = joined;
+            tail = ByteBuffer.allocate(0);
+        }
+        if( omittedBytes == 0 && ! tail.hasRemaining() && ls.equals("\n") && ASCII_COMPATIBLE && AsciiCharSequence.isAscii( head ) ){
+            // nothing to decode or normalize (except for a missing final newline)
+            boolean endsWithNewline = ! head.hasRemaining() || head.get( head.limit() - 1 ) == '\n';
+            return new AsciiCharSequence( head, ! endsWithNewline ); // (not copied, even if head is memory-mapped)
+        }
+        CharBuffer headChars = decode( head );
+        if( omittedBytes == 0 && ! tail.hasRemaining() && ls.equals("\n") && isNormalized( headChars ) ){
+            return headChars; // nothing to change, so avoid copying
+        }
+        CharBuffer tailChars = decode( tail );
+
+        CharBuffer chars = CharBuffer.allocate( ( headChars.remaining() + tailChars.remaining() + 1 ) * ls.length() );
+        boolean endsWithNewline = normalize( headChars, chars, ls );
+        int elisionIndex = chars.position();
+        if( tailChars.hasRemaining() ){
+            endsWithNewline = normalize( tailChars, chars, ls );
+        }
+        if( ! endsWithNewline && chars.position() > 0 ){
+            chars.put( ls ); // the last line always ends with a line separator
+        }
+        chars.flip();
+        if( omittedBytes > 0 ){
+            return new TruncatedText( chars, elisionIndex, omittedBytes );
+        }
+        return chars;
+    }
+
+    /**
+     * @return true if chars does not have any carriage returns and is either empty or ends with a newline
+     */
+    private static boolean isNormalized( CharBuffer chars ){
+        int length = chars.remaining();
+        for( int i = 0; i < length; ++i){
+            if( chars.get(i) == '\r' ){
+                return false;
+            }
+        }
+        return length == 0 || chars.get( length - 1 ) == '\n';
+    }
+
+    /**
+     * Copies src to dst, replacing each \n, \r or \r\n with ls
+     * @return true if src ended with a newline
+     */
+    private static boolean normalize( CharBuffer src, CharBuffer dst, String ls ){
+        boolean endsWithNewline = false;
+        int length = src.remaining();
+        for( int i = 0; i < length; ++i){
+            char c = src.get(i);
+            if( c == '\r' || c == '\n' ){
+                dst.put( ls );
+                if( c == '\r' && i + 1 < length && src.get(i + 1) == '\n' ){
+                    ++i;
+                }
+                endsWithNewline = true;
+            }else{
+                dst.put( c );
+                endsWithNewline = false;
+            }
+        }
+        return endsWithNewline;
+    }
+
+    private static CharBuffer decode( ByteBuffer bytes ){
+        try{
+            return newDecoder().decode( bytes.duplicate() );
+        }catch( CharacterCodingException e ){
+            throw new IllegalStateException( e ); // not possible since malformed input is replaced
+        }
+    }
+
+    /**
+     * @return true if each of the US-ASCII bytes is decoded by charset as the same character (e.g., for UTF-8 and ISO-8859-1, but not UTF-16)
+     */
+    static boolean isAsciiCompatible( Charset charset ){
+        byte[] bytes = new byte[128];
+        for( int i = 0; i < bytes.length; ++i){
+            bytes[i] = (byte) i;
+        }
+        String decoded = new String( bytes, charset );
+        if( decoded.length() != bytes.length ){
+            return false;
+        }
+        for( int i = 0; i < bytes.length; ++i){
+            if( decoded.charAt(i) != i ){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static CharsetDecoder newDecoder(){
+        return Charset.defaultCharset().newDecoder()
+            .onMalformedInput( CodingErrorAction.REPLACE )
+            .onUnmappableCharacter( CodingErrorAction.REPLACE );
+    }
+}
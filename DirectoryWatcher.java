@@ -0,0 +1,244 @@
+/**
+ * Grades each output file in a (spool) directory as soon as it is fully written (e.g., as submissions arrive during a deadline) with
+ * the same rubric, which stays compiled for as long as the directory is watched.
+ * New and modified files are found with a WatchService.  A file is graded once it has not been modified for debounceMillis
+ * (so that files that are still being written are not graded), and it is graded again if it is modified after that.
+ * Files are graded on a fixed number of threads with a bounded queue (when the queue is full, the watching thread grades the file itself).
+ * Each feedback file is written atomically (see BatchGrader.grade()), next to the output file by default.
+ * The output files are read into memory instead of being memory-mapped, since they may still be changed (or truncated) while they are graded.
+ * A file that can not be graded (for any reason) is reported as an ERROR and the rest of the files are still graded.
+ * When watching starts (and whenever events are lost), every file without an up-to-date feedback file is graded.
+ * @author Hyrum D. Carroll
+ * @version 1.0, (Oct 17, 2026)
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+public class DirectoryWatcher{
+
+    public final static long DEFAULT_DEBOUNCE_MILLIS = 100; // time a file must not be modified for before it is graded
+    public final static int DEFAULT_QUEUE_SIZE = 256;       // maximum number of files waiting to be graded
+
+    private final BatchGrader grader;
+    private final MatchResultWriter.Format format;
+    private final File dir;
+    private final File feedbackDir;
+    private final long debounceMillis;
+    private final ThreadPoolExecutor pool;
+    private final Map<String, Long> pending = new HashMap<String, Long>(); // time (in milliseconds) that each file to grade was last modified (only used by the watching thread)
+    private final Set<String> grading = new HashSet<String>();             // files being graded (access is synchronized on the set)
+    private final Set<String> regrade = new HashSet<String>();             // files modified while being graded (access is synchronized on grading)
+    private WatchService watchService;
+    private final Object reportLock = new Object(); // lock for writing a line to stdout for a graded file
+
+    /**
+     * @param grader Grader for each file (with the rubric)
+     * @param format Format of the feedback files (to know which files are feedback files)
+     * @param dir Directory to watch
+     * @param feedbackDir Directory to write the feedback files to (if null, then dir)
+     * @param threads Number of files to grade at the same time
+     * @param debounceMillis Number of milliseconds that a file must not be modified for before it is graded
+     */
+    public DirectoryWatcher( BatchGrader grader, MatchResultWriter.Format format, File dir, File feedbackDir, int threads, long debounceMillis ){
+        if( threads < 1 ){
+            throw new IllegalArgumentException("Number of threads must be at least 1 (not " + threads + ")");
+        }
+        if( ! dir.isDirectory() ){
+            throw new IllegalArgumentException("Unable to watch " + dir + " (it is not a directory)");
+        }
+        this.grader = grader;
+        this.format = format;
+        this.dir = dir;
+        this.feedbackDir = ( feedbackDir != null ) ? feedbackDir : dir;
+        this.debounceMillis = debounceMillis;
+        this.pool = new ThreadPoolExecutor( threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>( DEFAULT_QUEUE_SIZE ), new ThreadPoolExecutor.CallerRunsPolicy() );
+    }
+
+    /**
+     * Watches the directory and grades the files in it until stop() is called (or the thread is interrupted)
+     */
+    public void watch() throws IOException{
+        if( ! feedbackDir.isDirectory() && ! feedbackDir.mkdirs() ){
+            throw new IOException("Unable to create directory " + feedbackDir );
+        }
+        synchronized( this ){
+            watchService = dir.toPath().getFileSystem().newWatchService();
+        }
+        dir.toPath().register( watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY );
+        RefinedFeedback.DEBUG( "Watching " + dir + " (feedback is written to " + feedbackDir + ")" );
+        scan();
+        try{
+            while( true ){
+                WatchKey key;
+                long now = System.currentTimeMillis();
+                long nextDeadline = getNextDeadline();
+                if( nextDeadline < 0 ){
+                    key = watchService.take();
+                }else{
+                    key = watchService.poll( Math.max( 0, nextDeadline - now ), TimeUnit.MILLISECONDS );
+                }
+                if( key != null ){
+                    for( WatchEvent<?> event : key.pollEvents() ){
+                        if( event.kind() == StandardWatchEventKinds.OVERFLOW ){
+                            scan(); // some events were lost
+                        }else{
+                            addPending( ((Path) event.context()).toString() );
+                        }
+                    }
+                    key.reset();
+                }
+                gradeSettledFiles();
+            }
+        }catch( ClosedWatchServiceException e ){
+            // stopped
+        }catch( InterruptedException e ){
+            Thread.currentThread().interrupt();
+        }finally{
+            pool.shutdown();
+            try{
+                pool.awaitTermination( Long.MAX_VALUE, TimeUnit.MILLISECONDS );
+            }catch( InterruptedException e ){
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Stops watching (files that are already being graded are finished)
+     */
+    public synchronized void stop() throws IOException{
+        if( watchService != null ){
+            watchService.close();
+        }
+    }
+
+    /**
+     * Adds every file in the directory that does not have an up-to-date feedback file
+     */
+    private void scan(){
+        String[] filenames = dir.list();
+        if( filenames == null ){
+            System.err.println("REFINED FEEDBACK ERROR: Unable to read directory " + dir );
+            return;
+        }
+        for( String filename : filenames ){
+            File feedbackFile = new File( feedbackDir, filename + BatchGrader.getFeedbackExtension( format ) );
+            if( ! feedbackFile.exists() || feedbackFile.lastModified() < new File( dir, filename ).lastModified() ){
+                addPending( filename );
+            }
+        }
+    }
+
+    /**
+     * (Re)starts the wait for filename to be fully written
+     */
+    private void addPending( String filename ){
+        if( BatchGrader.isGraderFile( filename ) || filename.startsWith(".") ){
+            return;
+        }
+        pending.put( filename, System.currentTimeMillis() );
+    }
+
+    /**
+     * @return The time (in milliseconds) that the next pending file can be graded (or -1 if there are none)
+     */
+    private long getNextDeadline(){
+        long nextDeadline = -1;
+        for( long lastModified : pending.values() ){
+            if( nextDeadline < 0 || lastModified + debounceMillis < nextDeadline ){
+                nextDeadline = lastModified + debounceMillis;
+            }
+        }
+        return nextDeadline;
+    }
+
+    /**
+     * Grades each pending file that has not been modified for debounceMillis
+     */
+    private void gradeSettledFiles(){
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<String, Long>> it = pending.entrySet().iterator();
+        while( it.hasNext() ){
+            Map.Entry<String, Long> entry = it.next();
+            final File file = new File( dir, entry.getKey() );
+            if( entry.getValue() + debounceMillis > now ){
+                continue;
+            }
+            if( file.lastModified() + debounceMillis > now ){
+                entry.setValue( file.lastModified() ); // modified without an event yet
+                continue;
+            }
+            it.remove();
+            if( ! file.isFile() ){
+                continue; // e.g., a directory or already removed
+            }
+            synchronized( grading ){
+                if( ! grading.add( file.getName() ) ){
+                    regrade.add( file.getName() ); // graded again once the current grading finishes
+                    continue;
+                }
+            }
+            pool.execute( new Runnable(){
+                    public void run(){
+                        grade( file );
+                    }
+                });
+        }
+    }
+
+    /**
+     * Grades file (and grades it again if it was modified in the meantime)
+     */
+    private void grade( File file ){
+        boolean again = true;
+        while( again ){
+            try{
+                long startTime = System.nanoTime();
+                BatchGrader.Result result = grader.grade( file, feedbackDir, false );
+                long millis = (System.nanoTime() - startTime) / 1000000;
+                if( result.numMatches >= 0 ){
+                    report( result.filename + "\t" + result.numMatches + " matches found (" + millis + " ms)" );
+                }else{
+                    report( result.filename + "\tERROR" );
+                }
+            }catch( Throwable e ){
+                // e.g., a StackOverflowError from a regex, which must not stop the other files from being graded (or kill the watching thread)
+                System.err.println("REFINED FEEDBACK ERROR: Unable to grade " + file + ": " + e );
+                report( file.getName() + "\tERROR" );
+            }finally{
+                synchronized( grading ){
+                    again = regrade.remove( file.getName() );
+                    if( ! again ){
+                        grading.remove( file.getName() );
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the line for a graded file to stdout (each one is written whole, so the lines from different threads are never mixed)
+     * @param line Filename, a tab, and the number of matches found (or ERROR)
+     */
+    private void report( String line ){
+        synchronized( reportLock ){
+            System.out.println( line );
+            System.out.flush();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/**
+ * Fast search for regexes that only match literal text (e.g., "Welcome" or "98\.8").
+ * Uses Boyer-Moore-Horspool on case-folded characters and finds exactly the same matches as java.util.regex.Pattern would.
+ * Just like Pattern.CASE_INSENSITIVE (without Pattern.UNICODE_CASE), only US-ASCII letters are matched without regard to case.
+ * Instances are immutable and thread-safe.
+ * @author Hyrum D. Carroll
+ * @version 1.0, (Oct 17, 2026)
+ */
+
+import java.util.regex.Pattern;
+
+public class LiteralPattern{
+
+    private final static String METACHARACTERS = "\\^$.|?*+()[]{}"; // characters with a special meaning outside of a character class
+    private final static int SUPPORTED_FLAGS = Pattern.CASE_INSENSITIVE | Pattern.MULTILINE | Pattern.DOTALL | Pattern.UNIX_LINES; // flags that do not change how a literal matches
+    private final static int SHIFT_TABLE_SIZE = 256; // characters are hashed by their lowest 8 bits
+
+    private final String literal;       // unescaped text to find
+    private final boolean ignoreCase;
+    private final char[] pattern;       // literal (case-folded if ignoreCase)
+    private final int[] shift;          // number of characters to move the window for each (hashed) character
+
+    /**
+     * @param literal Text to find
+     * @param ignoreCase true to match US-ASCII letters without regard to case
+     */
+    public LiteralPattern( String literal, boolean ignoreCase ){
+        if( literal.length() == 0 ){
+            throw new IllegalArgumentException("Literal can not be empty");
+        }
+        this.literal = literal;
+        this.ignoreCase = ignoreCase;
+        this.pattern = new char[ literal.length() ];
+        for( int i = 0; i < pattern.length; ++i){
+            pattern[i] = fold( literal.charAt(i) );
+        }
+
+        // characters that share a hash use the smallest shift of any of them (later positions overwrite earlier ones with smaller shifts)
+        int last = pattern.length - 1;
+        shift = new int[ SHIFT_TABLE_SIZE ];
+        for( int i = 0; i < SHIFT_TABLE_SIZE; ++i){
+            shift[i] = pattern.length;
+        }
+        for( int j = 0; j < last; ++j){
+            shift[ pattern[j] & (SHIFT_TABLE_SIZE - 1) ] = last - j;
+        }
+    }
+
+    /**
+     * Compiles regex as a literal if it only matches literal text (i.e., it has no metacharacters other than escaped ones)
+     * @param regex Regular expression
+     * @param flags Flags that regex would be compiled with
+     * @return The literal pattern or null if regex is not (only) a literal
+     */
+    public static LiteralPattern compile( String regex, int flags ){
+        if( (flags & ~SUPPORTED_FLAGS) != 0 ){
+            return null;
+        }
+        String literal = getLiteral( regex );
+        if( literal == null || literal.length() == 0 ){
+            return null;
+        }
+        return new LiteralPattern( literal, (flags & Pattern.CASE_INSENSITIVE) != 0 );
+    }
+
+    /**
+     * Unescapes regex if it only matches literal text
+     * @param regex Regular expression
+     * @return The text that regex matches or null if regex has any unescaped metacharacters, escape sequences (e.g., \d or \b) or supplementary characters
+     */
+    public static String getLiteral( String regex ){
+        StringBuilder literal = new StringBuilder( regex.length() );
+        for( int i = 0; i < regex.length(); ++i){
+            char c = regex.charAt(i);
+            if( Character.isSurrogate( c ) ){
+                return null;
+            }
+            if( c == '\\' ){
+                // a backslash before a non-alphanumeric (US-ASCII) character is that character
+                if( i + 1 >= regex.length() ){
+                    return null;
+                }
+                c = regex.charAt( ++i );
+                if( c >= 128 || Character.isLetterOrDigit( c ) ){
+                    return null;
+                }
+            }else if( METACHARACTERS.indexOf( c ) >= 0 ){
+                return null;
+            }
+            literal.append( c );
+        }
+        return literal.toString();
+    }
+
+    /**
+     * @return The (unescaped) text that this matches
+     */
+    public String getLiteral(){
+        return literal;
+    }
+
+    /**
+     * @return The number of characters in each match
+     */
+    public int length(){
+        return pattern.length;
+    }
+
+    /**
+     * Folds US-ASCII uppercase letters to lowercase (if ignoring case), which is the same as Pattern.CASE_INSENSITIVE
+     */
+    private char fold( char c ){
+        if( ignoreCase && c >= 'A' && c <= 'Z' ){
+            return (char) ( c + ('a' - 'A') );
+        }
+        return c;
+    }
+
+    /**
+     * Finds the first occurrence of the literal in text at or after fromIndex
+     * @param text Text to search
+     * @param fromIndex Index to start searching from
+     * @param toIndex Index after the last character that a match can include
+     * @return The index of the first character of the match or -1 if it is not found
+     */
+    public int indexOf( CharSequence text, int fromIndex, int toIndex ){
+        int last = pattern.length - 1;
+        char lastChar = pattern[last];
+        int limit = toIndex - pattern.length;
+        int i = Math.max( fromIndex, 0 );
+        while( i <= limit ){
+            char c = fold( text.charAt( i + last ) );
+            if( c == lastChar ){
+                int j = last - 1;
+                while( j >= 0 && fold( text.charAt( i + j ) ) == pattern[j] ){
+                    --j;
+                }
+                if( j < 0 ){
+                    return i;
+                }
+            }
+            i += shift[ c & (SHIFT_TABLE_SIZE - 1) ];
+        }
+        return -1;
+    }
+}
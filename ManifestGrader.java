@@ -0,0 +1,257 @@
+/**
+ * Grades all of the test cases of a submission (i.e., its output for each input scenario, each with its own regexes and answer key) in a single JVM.
+ * The test cases are listed in a manifest file, one per line, as shell words (see RefinedFeedback.parseShellWords()):
+ *   <test case name> <output filename> <regexes filename> [<answer key filename> [<explanations filename>]]
+ * where the regexes file has the regexes written as command-line arguments (see RefinedFeedback.readRegexesFile()), - is used for no
+ * answer key (e.g., when there are explanations, but no answer key), relative filenames are relative to the manifest's directory,
+ * and blank lines and lines starting with # are ignored.
+ * Regexes that appear in more than one test case are only compiled once.
+ * The test cases are graded on a (work-stealing) pool of threads and a single report with a section for each one is written (in manifest order).
+ * @author Hyrum D. Carroll
+ * @version 1.0, (Oct 17, 2026)
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+
+public class ManifestGrader{
+
+    public final static String NO_FILE = "-"; // in the manifest for a missing answer key
+
+    private final static String SECTION_DIVIDER = "*******************************************************";
+
+    /**
+     * A test case from the manifest (with its regexes compiled)
+     */
+    public static class TestCase{
+        public final String name;
+        public final File outputFile;
+        public final Rubric rubric;
+        public final String[] answerKeyMatches;
+
+        public TestCase( String name, File outputFile, Rubric rubric, String[] answerKeyMatches ){
+            this.name = name;
+            this.outputFile = outputFile;
+            this.rubric = rubric;
+            this.answerKeyMatches = answerKeyMatches;
+        }
+    }
+
+    /**
+     * Result of grading one test case
+     */
+    public static class Result{
+        public final TestCase testCase;
+        public final int numMatches;  // -1 if the test case could not be graded
+        public final String feedback; // annotated view or JSON (or the error message)
+
+        public Result( TestCase testCase, int numMatches, String feedback ){
+            this.testCase = testCase;
+            this.numMatches = numMatches;
+            this.feedback = feedback;
+        }
+    }
+
+    private final TestCase[] testCases;
+    private final int threads;
+    private final long maxOutputBytes;
+    private final MatchResultWriter.Format format;
+
+    /**
+     * @param testCases Test cases to grade
+     * @param threads Number of test cases to grade at the same time
+     * @param maxOutputBytes Maximum number of bytes of each test case's output to keep (see BoundedInput)
+     * @param format Format of each test case's section of the report (the annotated view or JSON)
+     */
+    public ManifestGrader( TestCase[] testCases, int threads, long maxOutputBytes, MatchResultWriter.Format format ){
+        if( threads < 1 ){
+            throw new IllegalArgumentException("Number of threads must be at least 1 (not " + threads + ")");
+        }
+        if( format == MatchResultWriter.Format.BINARY ){
+            throw new IllegalArgumentException("--format binary can not be used with --manifest");
+        }
+        this.testCases = testCases;
+        this.threads = threads;
+        this.maxOutputBytes = maxOutputBytes;
+        this.format = format;
+    }
+
+    /**
+     * Reads the manifest and compiles the regexes of each test case (sharing the patterns of regexes used by more than one of them)
+     * @param manifestFilename Filename of the manifest
+     * @param args Command-line arguments (for the options for matching, e.g., time limits, see RefinedFeedback.applyOptions() and RefinedFeedback.lintRegexes())
+     * @return The test cases (in manifest order)
+     * @throws IllegalArgumentException if the manifest (or one of the files it lists) can not be read or is not valid
+     */
+    public static TestCase[] readManifest( String manifestFilename, String[] args ){
+        String contents = RefinedFeedback.getAllInput( manifestFilename );
+        if( contents == null ){
+            throw new IllegalArgumentException("Unable to read manifest " + manifestFilename );
+        }
+        File manifestDir = new File( manifestFilename ).getAbsoluteFile().getParentFile();
+        Map<String, Pattern> compiledPatterns = new ConcurrentHashMap<String, Pattern>();
+        Map<String, String[]> regexesByFilename = new HashMap<String, String[]>();
+        List<TestCase> testCases = new ArrayList<TestCase>();
+        String[] lines = contents.split( "\r?\n" );
+        for(int lineI = 0; lineI < lines.length; ++lineI){
+            String line = lines[lineI].trim();
+            if( line.length() == 0 || line.startsWith( "#" ) ){
+                continue;
+            }
+            String[] fields = RefinedFeedback.parseShellWords( line );
+            if( fields.length < 3 || fields.length > 5 ){
+                throw new IllegalArgumentException("Line " + (lineI + 1) + " of " + manifestFilename + " should have a test case name, output filename, regexes filename and optionally an answer key filename and explanations filename (not " + fields.length + " fields)");
+            }
+            String regexesFilename = resolve( manifestDir, fields[2] );
+            String[] regexes = regexesByFilename.get( regexesFilename );
+            if( regexes == null ){
+                regexes = RefinedFeedback.readRegexesFile( regexesFilename );
+                regexesByFilename.put( regexesFilename, regexes );
+            }
+            if( regexes.length == 0 ){
+                throw new IllegalArgumentException("No regexes found in " + regexesFilename + " (for test case " + fields[0] + ")");
+            }
+            regexes = RefinedFeedback.lintRegexes( regexes, RefinedFeedback.DEFAULT_REGEX_FLAGS, args );
+            String answerKeyFilename = ( fields.length > 3 ) ? resolve( manifestDir, fields[3] ) : null;
+            String explanationsFilename = ( fields.length > 4 ) ? resolve( manifestDir, fields[4] ) : null;
+            if( answerKeyFilename != null && ! new File( answerKeyFilename ).isFile() ){
+                throw new IllegalArgumentException("Unable to read answer key " + answerKeyFilename + " (for test case " + fields[0] + ")");
+            }
+            Rubric rubric = RefinedFeedback.applyOptions( new Rubric( regexes, RefinedFeedback.DEFAULT_REGEX_FLAGS, compiledPatterns ), args );
+            String[] answerKeyMatches = RefinedFeedback.loadAnswerKeyMatches( regexes, answerKeyFilename, explanationsFilename );
+            testCases.add( new TestCase( fields[0], new File( resolve( manifestDir, fields[1] ) ), rubric, answerKeyMatches ) );
+        }
+        RefinedFeedback.DEBUG( "Compiled " + compiledPatterns.size() + " distinct regexes for " + testCases.size() + " test cases" );
+        return testCases.toArray( new TestCase[0] );
+    }
+
+    /**
+     * @return filename relative to dir (unless it is absolute), or null for NO_FILE
+     */
+    private static String resolve( File dir, String filename ){
+        if( filename.equals( NO_FILE ) ){
+            return null;
+        }
+        File file = new File( filename );
+        return file.isAbsolute() ? filename : new File( dir, filename ).getPath();
+    }
+
+    /**
+     * Grades a single test case
+     * @param testCase Test case to grade
+     * @return The number of matches found and the feedback
+     */
+    public Result grade( TestCase testCase ){
+        try{
+            CharSequence outputStr = BoundedInput.read( testCase.outputFile, maxOutputBytes );
+            int[][] indices = testCase.rubric.getMatchingIndices( outputStr );
+            StringBuilder feedback = new StringBuilder();
+            if( format == MatchResultWriter.Format.JSON ){
+                MatchResultWriter.writeJson( feedback, testCase.rubric.getRegexes(), indices, testCase.answerKeyMatches, outputStr );
+            }else{
+                RefinedFeedback.writeFeedback( feedback, testCase.rubric, testCase.answerKeyMatches, outputStr, indices );
+            }
+            return new Result( testCase, RefinedFeedback.getNumMatches( indices ), feedback.toString() );
+        }catch( IOException e ){
+            return new Result( testCase, -1, "REFINED FEEDBACK ERROR: " + e.getMessage() );
+        }
+    }
+
+    /**
+     * Grades each of the test cases (in parallel)
+     * @return Results in the same order as the test cases
+     */
+    public Result[] grade(){
+        Result[] results = new Result[ testCases.length ];
+        ExecutorService pool = Executors.newWorkStealingPool( threads );
+        try{
+            List<Future<Result>> futures = new ArrayList<Future<Result>>( testCases.length );
+            for( final TestCase testCase : testCases ){
+                futures.add( pool.submit( new Callable<Result>(){
+                        public Result call(){
+                            return grade( testCase );
+                        }
+                    }));
+            }
+            for( int i = 0; i < results.length; ++i){
+                try{
+                    results[i] = futures.get(i).get();
+                }catch( ExecutionException e ){
+                    results[i] = new Result( testCases[i], -1, "REFINED FEEDBACK ERROR: Unable to grade " + testCases[i].name + ": " + e.getCause() );
+                }
+            }
+        }catch( InterruptedException e ){
+            Thread.currentThread().interrupt();
+        }finally{
+            pool.shutdownNow();
+        }
+        return results;
+    }
+
+    /**
+     * Writes the report: a section for each test case (with its feedback) followed by the number of matches found for each one
+     * (or, for JSON, an object with the name, output filename and results of each test case)
+     * @param out Where to write the report
+     * @param results Results of grading the test cases
+     */
+    public void writeReport( Appendable out, Result[] results ) throws IOException{
+        String ls = System.getProperty("line.separator");
+        if( format == MatchResultWriter.Format.JSON ){
+            out.append( "{\"numTestCases\": " ).append( Integer.toString( results.length ) ).append( ", \"testCases\": [" );
+            for( int i = 0; i < results.length; ++i){
+                Result result = results[i];
+                out.append( i == 0 ? ls : "," + ls );
+                out.append( "{\"name\": " ).append( MatchStatistics.toJsonString( result.testCase.name ) );
+                out.append( ", \"output\": " ).append( MatchStatistics.toJsonString( result.testCase.outputFile.getPath() ) );
+                if( result.numMatches < 0 ){
+                    out.append( ", \"error\": " ).append( MatchStatistics.toJsonString( result.feedback ) ).append( "}" );
+                }else{
+                    out.append( ", \"result\": " ).append( result.feedback ).append( "}" );
+                }
+            }
+            out.append( ls ).append( "]}" ).append( ls );
+            return;
+        }
+
+        int numGraded = 0;
+        int numAllMatched = 0;
+        long totalMatches = 0;
+        long totalRegexes = 0;
+        StringBuilder summary = new StringBuilder();
+        for( Result result : results ){
+            out.append( SECTION_DIVIDER ).append( ls );
+            out.append( "Test case: " ).append( result.testCase.name ).append( ls );
+            out.append( SECTION_DIVIDER ).append( ls );
+            out.append( result.feedback ).append( ls ).append( ls );
+
+            int numRegexes = result.testCase.rubric.size();
+            if( result.numMatches < 0 ){
+                summary.append( result.testCase.name ).append( "\tERROR" ).append( ls );
+            }else{
+                summary.append( result.testCase.name ).append( "\t" ).append( Integer.toString( result.numMatches ) ).append( " of " ).append( Integer.toString( numRegexes ) ).append( " matches found" ).append( ls );
+                ++numGraded;
+                totalMatches += result.numMatches;
+                totalRegexes += numRegexes;
+                if( result.numMatches == numRegexes ){
+                    ++numAllMatched;
+                }
+            }
+        }
+        out.append( SECTION_DIVIDER ).append( ls );
+        out.append( "Summary" ).append( ls );
+        out.append( SECTION_DIVIDER ).append( ls );
+        out.append( summary );
+        out.append( "Graded " + numGraded + " of " + results.length + " test cases (" + numAllMatched + " with all matches found, " + totalMatches + " of " + totalRegexes + " matches found in total)" ).append( ls );
+    }
+}
@@ -0,0 +1,144 @@
+/**
+ * Writes the results of matching a submission (the indices, whether each regex was matched and the strings to display for them)
+ * in a machine-readable format, so that scoring does not need to render the annotated view or parse it.
+ *
+ * JSON: {"numRegexes": N, "numMatches": N, "numMissing": N, "numTimedOut": N, "items": [{"index": 0, "regex": "...", "matched": true,
+ *        "timedOut": false, "start": 0, "end": 6, "display": "..."}, ...]}
+ *       (start and end are the indices of the first and last matching characters, or -1 if missing and -2 if timed out)
+ * Binary (all integers are big-endian, all strings are UTF-8 prefixed with their length in bytes):
+ *       MAGIC, VERSION, number of regexes, number of matches, then for each regex: its status (STATUS_MATCHED, STATUS_MISSING or
+ *       STATUS_TIMED_OUT, as a byte), start and end indices, regex and display string
+ * @author Hyrum D. Carroll
+ * @version 1.0, (Oct 17, 2026)
+ */
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+public class MatchResultWriter{
+
+    public final static int MAGIC = 0x52464d31; // "RFM1"
+    public final static int VERSION = 1;
+
+    public final static byte STATUS_MATCHED = 0;
+    public final static byte STATUS_MISSING = 1;
+    public final static byte STATUS_TIMED_OUT = 2;
+
+    /**
+     * How the results are written
+     */
+    public enum Format{
+        TEXT,   // the annotated view (see RefinedFeedback.writeFeedback())
+        JSON,
+        BINARY
+    }
+
+    /**
+     * @param formatStr Name of the format (e.g., json)
+     * @return The format
+     * @throws IllegalArgumentException if formatStr is not a format
+     */
+    public static Format parseFormat( String formatStr ){
+        try{
+            return Format.valueOf( formatStr.toUpperCase() );
+        }catch( IllegalArgumentException e ){
+            throw new IllegalArgumentException("Unknown format: " + formatStr );
+        }
+    }
+
+    /**
+     * @param regexIndices First and last indices of the match for a regex
+     * @return STATUS_MATCHED, STATUS_MISSING or STATUS_TIMED_OUT
+     */
+    public static byte getStatus( int[] regexIndices ){
+        if( regexIndices[0] >= 0 ){
+            return STATUS_MATCHED;
+        }
+        return ( regexIndices[0] == Rubric.TIMED_OUT ) ? STATUS_TIMED_OUT : STATUS_MISSING;
+    }
+
+    /**
+     * Writes the results as a JSON object (without a trailing newline)
+     * @param out Where to write the results
+     * @param regexes Ordered list of regular expressions
+     * @param indices First and last indices of matches of the regular expressions in regexes
+     * @param answerKeyMatches Strings to display for each regex
+     */
+    public static void writeJson( Appendable out, String[] regexes, int[][] indices, String[] answerKeyMatches ) throws IOException{
+        writeJson( out, regexes, indices, answerKeyMatches, null );
+    }
+
+    /**
+     * Writes the results as a JSON object (without a trailing newline), including where bytes were omitted from text (if any, see BoundedInput.TruncatedText)
+     * @param out Where to write the results
+     * @param regexes Ordered list of regular expressions
+     * @param indices First and last indices of matches of the regular expressions in regexes
+     * @param answerKeyMatches Strings to display for each regex
+     * @param text Text the matches were found in (or null)
+     */
+    public static void writeJson( Appendable out, String[] regexes, int[][] indices, String[] answerKeyMatches, CharSequence text ) throws IOException{
+        int numMatches = 0;
+        int numTimedOut = 0;
+        for(int regexI = 0; regexI < indices.length; ++regexI){
+            byte status = getStatus( indices[regexI] );
+            if( status == STATUS_MATCHED ){
+                ++numMatches;
+            }else if( status == STATUS_TIMED_OUT ){
+                ++numTimedOut;
+            }
+        }
+        out.append( "{\"numRegexes\": " ).append( Integer.toString( regexes.length ) );
+        out.append( ", \"numMatches\": " ).append( Integer.toString( numMatches ) );
+        out.append( ", \"numMissing\": " ).append( Integer.toString( regexes.length - numMatches - numTimedOut ) );
+        out.append( ", \"numTimedOut\": " ).append( Integer.toString( numTimedOut ) );
+        if( text instanceof BoundedInput.TruncatedText ){
+            BoundedInput.TruncatedText truncatedText = (BoundedInput.TruncatedText) text;
+            out.append( ", \"truncated\": {\"index\": " ).append( Integer.toString( truncatedText.getElisionIndex() ) );
+            out.append( ", \"omittedBytes\": " ).append( Long.toString( truncatedText.getOmittedBytes() ) ).append( "}" );
+        }
+        out.append( ", \"items\": [" );
+        for(int regexI = 0; regexI < regexes.length; ++regexI){
+            byte status = getStatus( indices[regexI] );
+            out.append( regexI == 0 ? "\n" : ",\n" );
+            out.append( "  {\"index\": " ).append( Integer.toString( regexI ) );
+            out.append( ", \"regex\": " ).append( MatchStatistics.toJsonString( regexes[regexI] ) );
+            out.append( ", \"matched\": " ).append( status == STATUS_MATCHED ? "true" : "false" );
+            out.append( ", \"timedOut\": " ).append( status == STATUS_TIMED_OUT ? "true" : "false" );
+            out.append( ", \"start\": " ).append( Integer.toString( indices[regexI][0] ) );
+            out.append( ", \"end\": " ).append( Integer.toString( indices[regexI][1] ) );
+            out.append( ", \"display\": " ).append( MatchStatistics.toJsonString( answerKeyMatches[regexI] ) ).append( "}" );
+        }
+        out.append( "\n]}" );
+    }
+
+    /**
+     * Writes the results in the binary format
+     * @param out Where to write the results (should be buffered)
+     * @param regexes Ordered list of regular expressions
+     * @param indices First and last indices of matches of the regular expressions in regexes
+     * @param answerKeyMatches Strings to display for each regex
+     */
+    public static void writeBinary( OutputStream out, String[] regexes, int[][] indices, String[] answerKeyMatches ) throws IOException{
+        DataOutputStream dataOut = new DataOutputStream( out );
+        dataOut.writeInt( MAGIC );
+        dataOut.writeInt( VERSION );
+        dataOut.writeInt( regexes.length );
+        dataOut.writeInt( RefinedFeedback.getNumMatches( indices ) );
+        for(int regexI = 0; regexI < regexes.length; ++regexI){
+            dataOut.writeByte( getStatus( indices[regexI] ) );
+            dataOut.writeInt( indices[regexI][0] );
+            dataOut.writeInt( indices[regexI][1] );
+            writeString( dataOut, regexes[regexI] );
+            writeString( dataOut, answerKeyMatches[regexI] );
+        }
+        dataOut.flush();
+    }
+
+    private static void writeString( DataOutputStream out, String str ) throws IOException{
+        byte[] bytes = str.getBytes( StandardCharsets.UTF_8 );
+        out.writeInt( bytes.length );
+        out.write( bytes );
+    }
+}
@@ -0,0 +1,239 @@
+/**
+ * Collects per-regex and per-submission timings and counts from a Rubric (see Rubric.withListener()) and exports them as JSON or CSV.
+ * For each regex: the time spent compiling it, the number of searches, the time spent searching, the characters scanned and the number of submissions it was found in (or missing or timed out).
+ * For each submission: its name, the number of characters, the time spent matching and rendering and the number of matches (sorted by name).
+ * Thread-safe (e.g., for grading a batch of submissions).
+ * @author Hyrum D. Carroll
+ * @version 1.0, (Oct 17, 2026)
+ */
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class MatchStatistics implements RubricListener{
+
+    private final String[] regexes;
+    private final long[] compileNanos;
+    private final AtomicLongArray searches;
+    private final AtomicLongArray findNanos;
+    private final AtomicLongArray charsScanned;
+    private final AtomicLongArray hits;
+    private final AtomicLongArray misses;
+    private final AtomicLongArray timeouts;
+    private final List<Submission> submissions = new ArrayList<Submission>(); // in the order that they were matched
+    private final ThreadLocal<Submission> lastSubmission = new ThreadLocal<Submission>(); // most recently matched submission for each thread (so that its render time can be added)
+    private final ThreadLocal<String> startedName = new ThreadLocal<String>(); // name of the submission that each thread is matching (see submissionStarted())
+
+    /**
+     * Timings for one submission
+     */
+    private static class Submission{
+        final String name; // "" if the grader did not name it
+        final int sequence; // order that it was matched in (for submissions with the same name)
+        final int textLength;
+        final long matchNanos;
+        final int numMatches;
+        long renderNanos = -1; // -1 if it has not been rendered
+
+        Submission( String name, int sequence, int textLength, long matchNanos, int numMatches ){
+            this.name = name;
+            this.sequence = sequence;
+            this.textLength = textLength;
+            this.matchNanos = matchNanos;
+            this.numMatches = numMatches;
+        }
+    }
+
+    /**
+     * @param rubric Regexes to collect the statistics for (attach this with rubric.withListener())
+     */
+    public MatchStatistics( Rubric rubric ){
+        this.regexes = rubric.getRegexes();
+        this.compileNanos = new long[ regexes.length ];
+        for(int regexI = 0; regexI < regexes.length; ++regexI){
+            compileNanos[regexI] = rubric.getCompileNanos( regexI );
+        }
+        this.searches = new AtomicLongArray( regexes.length );
+        this.findNanos = new AtomicLongArray( regexes.length );
+        this.charsScanned = new AtomicLongArray( regexes.length );
+        this.hits = new AtomicLongArray( regexes.length );
+        this.misses = new AtomicLongArray( regexes.length );
+        this.timeouts = new AtomicLongArray( regexes.length );
+    }
+
+    public void submissionStarted( String name ){
+        startedName.set( name );
+    }
+
+    public void regexSearched( int regexI, long nanos, long chars ){
+        searches.incrementAndGet( regexI );
+        findNanos.addAndGet( regexI, nanos );
+        charsScanned.addAndGet( regexI, chars );
+    }
+
+    public void submissionMatched( int textLength, int[][] indices, long nanos ){
+        int numMatches = 0;
+        for(int regexI = 0; regexI < indices.length; ++regexI){
+            if( indices[regexI][0] >= 0 ){
+                hits.incrementAndGet( regexI );
+                ++numMatches;
+            }else if( indices[regexI][0] == Rubric.TIMED_OUT ){
+                timeouts.incrementAndGet( regexI );
+            }else{
+                misses.incrementAndGet( regexI );
+            }
+        }
+        String name = startedName.get();
+        startedName.remove();
+        Submission submission;
+        synchronized( submissions ){
+            submission = new Submission( ( name != null ) ? name : "", submissions.size(), textLength, nanos, numMatches );
+            submissions.add( submission );
+        }
+        lastSubmission.set( submission );
+    }
+
+    public void submissionRendered( int textLength, long nanos ){
+        Submission submission = lastSubmission.get();
+        if( submission != null && submission.textLength == textLength ){
+            synchronized( submissions ){
+                submission.renderNanos = nanos;
+            }
+            lastSubmission.remove();
+        }
+    }
+
+    /**
+     * Writes the statistics as a JSON object with "regexes" and "submissions" arrays
+     * @param out Where to write the statistics
+     */
+    public void writeJson( Appendable out ) throws IOException{
+        out.append( "{\n  \"regexes\": [" );
+        for(int regexI = 0; regexI < regexes.length; ++regexI){
+            out.append( regexI == 0 ? "\n" : ",\n" );
+            out.append( "    {\"index\": " ).append( Integer.toString( regexI ) );
+            out.append( ", \"regex\": " ).append( toJsonString( regexes[regexI] ) );
+            out.append( ", \"compileNanos\": " ).append( Long.toString( compileNanos[regexI] ) );
+            out.append( ", \"searches\": " ).append( Long.toString( searches.get( regexI ) ) );
+            out.append( ", \"findNanos\": " ).append( Long.toString( findNanos.get( regexI ) ) );
+            out.append( ", \"charsScanned\": " ).append( Long.toString( charsScanned.get( regexI ) ) );
+            out.append( ", \"hits\": " ).append( Long.toString( hits.get( regexI ) ) );
+            out.append( ", \"misses\": " ).append( Long.toString( misses.get( regexI ) ) );
+            out.append( ", \"timeouts\": " ).append( Long.toString( timeouts.get( regexI ) ) ).append( "}" );
+        }
+        out.append( "\n  ],\n  \"submissions\": [" );
+        synchronized( submissions ){
+            List<Submission> sortedSubmissions = getSortedSubmissions();
+            for( int submissionI = 0; submissionI < sortedSubmissions.size(); ++submissionI){
+                Submission submission = sortedSubmissions.get( submissionI );
+                out.append( submissionI == 0 ? "\n" : ",\n" );
+                out.append( "    {\"name\": " ).append( toJsonString( submission.name ) );
+                out.append( ", \"inputChars\": " ).append( Integer.toString( submission.textLength ) );
+                out.append( ", \"matchNanos\": " ).append( Long.toString( submission.matchNanos ) );
+                out.append( ", \"renderNanos\": " ).append( Long.toString( submission.renderNanos ) );
+                out.append( ", \"matches\": " ).append( Integer.toString( submission.numMatches ) ).append( "}" );
+            }
+        }
+        out.append( "\n  ]\n}\n" );
+    }
+
+    /**
+     * Writes the statistics as CSV: a table of the regexes, a blank line, then a table of the submissions (each with a header row)
+     * @param out Where to write the statistics
+     */
+    public void writeCsv( Appendable out ) throws IOException{
+        out.append( "index,regex,compileNanos,searches,findNanos,charsScanned,hits,misses,timeouts\n" );
+        for(int regexI = 0; regexI < regexes.length; ++regexI){
+            out.append( Integer.toString( regexI ) ).append( ',' ).append( toCsvField( regexes[regexI] ) );
+            out.append( ',' ).append( Long.toString( compileNanos[regexI] ) );
+            out.append( ',' ).append( Long.toString( searches.get( regexI ) ) );
+            out.append( ',' ).append( Long.toString( findNanos.get( regexI ) ) );
+            out.append( ',' ).append( Long.toString( charsScanned.get( regexI ) ) );
+            out.append( ',' ).append( Long.toString( hits.get( regexI ) ) );
+            out.append( ',' ).append( Long.toString( misses.get( regexI ) ) );
+            out.append( ',' ).append( Long.toString( timeouts.get( regexI ) ) ).append( '\n' );
+        }
+        out.append( "\nsubmission,inputChars,matchNanos,renderNanos,matches\n" );
+        synchronized( submissions ){
+            for( Submission submission : getSortedSubmissions() ){
+                out.append( toCsvField( submission.name ) );
+                out.append( ',' ).append( Integer.toString( submission.textLength ) );
+                out.append( ',' ).append( Long.toString( submission.matchNanos ) );
+                out.append( ',' ).append( Long.toString( submission.renderNanos ) );
+                out.append( ',' ).append( Integer.toString( submission.numMatches ) ).append( '\n' );
+            }
+        }
+    }
+
+    /**
+     * @return The submissions sorted by name (and then in the order that they were matched), so that the order does not depend on which thread finished first
+     */
+    private List<Submission> getSortedSubmissions(){
+        List<Submission> sortedSubmissions = new ArrayList<Submission>( submissions );
+        Collections.sort( sortedSubmissions, new Comparator<Submission>(){
+                public int compare( Submission a, Submission b ){
+                    int nameComparison = a.name.compareTo( b.name );
+                    return ( nameComparison != 0 ) ? nameComparison : Integer.compare( a.sequence, b.sequence );
+                }
+            });
+        return sortedSubmissions;
+    }
+
+    /**
+     * Writes the statistics to a file (as CSV if its name ends with .csv, otherwise as JSON)
+     * @param filename Name of the file to write
+     */
+    public void write( String filename ) throws IOException{
+        Writer out = new FileWriter( filename );
+        try{
+            if( filename.toLowerCase().endsWith(".csv") ){
+                writeCsv( out );
+            }else{
+                writeJson( out );
+            }
+        }finally{
+            out.close();
+        }
+    }
+
+    /**
+     * @return str as a (quoted and escaped) JSON string
+     */
+    public static String toJsonString( String str ){
+        StringBuilder json = new StringBuilder( str.length() + 2 );
+        json.append( '"' );
+        for( int i = 0; i < str.length(); ++i){
+            char c = str.charAt(i);
+            if( c == '"' || c == '\\' ){
+                json.append( '\\' ).append( c );
+            }else if( c == '\n' ){
+                json.append( "\\n" );
+            }else if( c == '\r' ){
+                json.append( "\\r" );
+            }else if( c == '\t' ){
+                json.append( "\\t" );
+            }else if( c < 0x20 ){
+                json.append( String.format( "\\u%04x", (int) c ) );
+            }else{
+                json.append( c );
+            }
+        }
+        return json.append( '"' ).toString();
+    }
+
+    /**
+     * @return str as a CSV field (quoted if it has a comma, quote or newline)
+     */
+    private static String toCsvField( String str ){
+        if( str.indexOf( ',' ) < 0 && str.indexOf( '"' ) < 0 && str.indexOf( '\n' ) < 0 && str.indexOf( '\r' ) < 0 ){
+            return str;
+        }
+        return "\"" + str.replace( "\"", "\"\"" ) + "\"";
+    }
+}
@@ -0,0 +1,543 @@
+/**
+ * Compact table of the matches found for many submissions (e.g., a whole cohort) with the same rubric, for storing and analyzing them.
+ * Instead of an int[][] (with an array for each regex) for each submission, the first and last indices of every match are stored in
+ * two flat int[] columns (indexed by submission * number of regexes + regex), along with a column for the length of each submission's output.
+ * Aggregates (the miss rate of each regex, the most commonly missed runs of consecutive regexes and histograms of where each regex is
+ * found in the output) are computed in parallel over blocks of submissions.
+ * Tables can be written to and read from a file (which is memory-mapped), in this format (all integers are big-endian,
+ * all strings are UTF-8 prefixed with their length in bytes):
+ *   MAGIC, VERSION, number of regexes, number of submissions, the start column, the end column, the length column,
+ *   each regex, then the name of each submission
+ * Adding submissions is thread-safe (e.g., from a BatchGrader's threads); the aggregates should be computed once all of them are added.
+ * @author Hyrum D. Carroll
+ * @version 1.0, (Oct 17, 2026)
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+public class MatchTable{
+
+    public final static int MAGIC = 0x52465431; // "RFT1"
+    public final static int VERSION = 1;
+    public final static int DEFAULT_CAPACITY = 1024;   // number of submissions
+    public final static int MIN_ROWS_PER_BLOCK = 4096; // number of submissions aggregated by each task
+
+    private final String[] regexes;
+    private final int numRegexes;
+    private int numRows = 0;
+    private int[] starts;   // first index of each match (or Rubric.NOT_FOUND or Rubric.TIMED_OUT)
+    private int[] ends;     // last index of each match
+    private int[] lengths;  // number of characters in each submission's output
+    private final List<String> names;
+
+    /**
+     * Commonly missed run of consecutive regexes (see getMissedRuns())
+     */
+    public static class MissedRun{
+        public final int firstRegexI;
+        public final int lastRegexI;
+        public final long count;  // number of submissions missing exactly this run
+
+        public MissedRun( int firstRegexI, int lastRegexI, long count ){
+            this.firstRegexI = firstRegexI;
+            this.lastRegexI = lastRegexI;
+            this.count = count;
+        }
+    }
+
+    /**
+     * @param regexes Ordered list of regular expressions (of the rubric)
+     */
+    public MatchTable( String[] regexes ){
+        this( regexes, DEFAULT_CAPACITY );
+    }
+
+    /**
+     * @param regexes Ordered list of regular expressions (of the rubric)
+     * @param capacity Number of submissions to allocate space for (more space is allocated as needed)
+     */
+    public MatchTable( String[] regexes, int capacity ){
+        this.regexes = regexes.clone();
+        this.numRegexes = regexes.length;
+        capacity = Math.max( capacity, 1 );
+        this.starts = new int[ capacity * numRegexes ];
+        this.ends = new int[ capacity * numRegexes ];
+        this.lengths = new int[ capacity ];
+        this.names = new ArrayList<String>( capacity );
+    }
+
+    /**
+     * Adds the matches found for a submission
+     * @param name Name of the submission (e.g., its filename)
+     * @param textLength Number of characters in the submission's output
+     * @param indices First and last indices of matches of the regexes (from Rubric.getMatchingIndices())
+     * @return The row of the submission
+     */
+    public synchronized int add( String name, int textLength, int[][] indices ){
+        if( indices.length != numRegexes ){
+            throw new IllegalArgumentException("Number of indices (" + indices.length + ") differs from the number of regexes (" + numRegexes + ")");
+        }
+        if( numRows == lengths.length ){
+            int capacity = (int) Math.min( Integer.MAX_VALUE / Math.max( numRegexes, 1 ), 2L * lengths.length );
+            if( capacity <= numRows ){
+                throw new IllegalStateException("Match table is full");
+            }
+            starts = Arrays.copyOf( starts, capacity * numRegexes );
+            ends = Arrays.copyOf( ends, capacity * numRegexes );
+            lengths = Arrays.copyOf( lengths, capacity );
+        }
+        int offset = numRows * numRegexes;
+        for(int regexI = 0; regexI < numRegexes; ++regexI){
+            starts[ offset + regexI ] = indices[regexI][0];
+            ends[ offset + regexI ] = indices[regexI][1];
+        }
+        lengths[ numRows ] = textLength;
+        names.add( name );
+        return numRows++;
+    }
+
+    public synchronized int getNumSubmissions(){
+        return numRows;
+    }
+
+    public int getNumRegexes(){
+        return numRegexes;
+    }
+
+    /**
+     * @return A copy of the regexes
+     */
+    public String[] getRegexes(){
+        return regexes.clone();
+    }
+
+    public synchronized String getName( int row ){
+        return names.get( row );
+    }
+
+    public synchronized int getLength( int row ){
+        return lengths[ row ];
+    }
+
+    /**
+     * @return The first index of the match of regexI in the submission at row (or Rubric.NOT_FOUND or Rubric.TIMED_OUT)
+     */
+    public synchronized int getStart( int row, int regexI ){
+        return starts[ row * numRegexes + regexI ];
+    }
+
+    /**
+     * @return The last index of the match of regexI in the submission at row (or Rubric.NOT_FOUND or Rubric.TIMED_OUT)
+     */
+    public synchronized int getEnd( int row, int regexI ){
+        return ends[ row * numRegexes + regexI ];
+    }
+
+    /**
+     * @return The indices for the submission at row (in the same form as Rubric.getMatchingIndices())
+     */
+    public synchronized int[][] getIndices( int row ){
+        int[][] indices = new int[ numRegexes ][2];
+        for(int regexI = 0; regexI < numRegexes; ++regexI){
+            indices[regexI][0] = starts[ row * numRegexes + regexI ];
+            indices[regexI][1] = ends[ row * numRegexes + regexI ];
+        }
+        return indices;
+    }
+
+    /**
+     * The rows added so far (taken together under the lock, so that the number of rows always matches the arrays, even if add() then grows them)
+     */
+    private static class Rows{
+        final int numRows;
+        final int[] starts;
+        final int[] lengths;
+
+        Rows( int numRows, int[] starts, int[] lengths ){
+            this.numRows = numRows;
+            this.starts = starts;
+            this.lengths = lengths;
+        }
+    }
+
+    /**
+     * @return The rows added so far (which are not changed by add())
+     */
+    private synchronized Rows getRows(){
+        return new Rows( numRows, starts, lengths );
+    }
+
+    /**
+     * Aggregate of a block of rows
+     */
+    private interface BlockAggregator<T>{
+        T aggregate( int fromRow, int toRow );
+    }
+
+    /**
+     * Aggregates blocks of rows in parallel (in the common ForkJoinPool)
+     * @param rows Number of rows to aggregate (from getRows())
+     * @return The aggregate of each block (in order)
+     */
+    private <T> List<T> aggregateBlocks( int rows, final BlockAggregator<T> aggregator ){
+        int numBlocks = (int) Math.max( 1, Math.min( (rows + MIN_ROWS_PER_BLOCK - 1) / MIN_ROWS_PER_BLOCK, 4L * ForkJoinPool.getCommonPoolParallelism() ) );
+        int rowsPerBlock = (rows + numBlocks - 1) / numBlocks;
+        List<Future<T>> futures = new ArrayList<Future<T>>( numBlocks );
+        for( int fromRow = 0; fromRow < rows || futures.isEmpty(); fromRow += rowsPerBlock ){
+            final int blockFromRow = fromRow;
+            final int blockToRow = Math.min( rows, fromRow + rowsPerBlock );
+            futures.add( ForkJoinPool.commonPool().submit( new Callable<T>(){
+                    public T call(){
+                        return aggregator.aggregate( blockFromRow, blockToRow );
+                    }
+                }));
+            if( rowsPerBlock == 0 ){
+                break;
+            }
+        }
+        List<T> blocks = new ArrayList<T>( futures.size() );
+        try{
+            for( Future<T> future : futures ){
+                blocks.add( future.get() );
+            }
+        }catch( InterruptedException e ){
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException( e );
+        }catch( ExecutionException e ){
+            throw new IllegalStateException( e.getCause() );
+        }
+        return blocks;
+    }
+
+    /**
+     * @return The number of submissions that each regex was not matched in (missing or timed out)
+     */
+    public long[] getMissCounts(){
+        return getMissCounts( getRows() );
+    }
+
+    private long[] getMissCounts( Rows rows ){
+        final int[] starts = rows.starts;
+        long[] missCounts = new long[ numRegexes ];
+        for( long[] blockCounts : aggregateBlocks( rows.numRows, new BlockAggregator<long[]>(){
+                public long[] aggregate( int fromRow, int toRow ){
+                    long[] counts = new long[ numRegexes ];
+                    for( int i = fromRow * numRegexes; i < toRow * numRegexes; ++i){
+                        if( starts[i] < 0 ){
+                            ++counts[ i % numRegexes ];
+                        }
+                    }
+                    return counts;
+                }
+            }) ){
+            for(int regexI = 0; regexI < numRegexes; ++regexI){
+                missCounts[regexI] += blockCounts[regexI];
+            }
+        }
+        return missCounts;
+    }
+
+    /**
+     * @return The fraction of submissions that each regex was not matched in (missing or timed out)
+     */
+    public double[] getMissRates(){
+        return getMissRates( getRows() );
+    }
+
+    private double[] getMissRates( Rows rows ){
+        long[] missCounts = getMissCounts( rows );
+        double[] missRates = new double[ numRegexes ];
+        for(int regexI = 0; regexI < numRegexes; ++regexI){
+            missRates[regexI] = ( rows.numRows > 0 ) ? (double) missCounts[regexI] / rows.numRows : 0;
+        }
+        return missRates;
+    }
+
+    /**
+     * Finds the most common runs of consecutive regexes that are not matched (i.e., the same groups shown together as missing in the annotated view)
+     * @param maxRuns Maximum number of runs to return
+     * @return The runs (each one counted once for each submission where it is a whole run of missing regexes), most common first
+     */
+    public List<MissedRun> getMissedRuns( int maxRuns ){
+        return getMissedRuns( getRows(), maxRuns );
+    }
+
+    private List<MissedRun> getMissedRuns( Rows rows, int maxRuns ){
+        final int[] starts = rows.starts;
+        // each run is keyed by its first and last regex
+        Map<Long, long[]> counts = new HashMap<Long, long[]>();
+        for( Map<Long, long[]> blockCounts : aggregateBlocks( rows.numRows, new BlockAggregator<Map<Long, long[]>>(){
+                public Map<Long, long[]> aggregate( int fromRow, int toRow ){
+                    Map<Long, long[]> blockCounts = new HashMap<Long, long[]>();
+                    for( int row = fromRow; row < toRow; ++row){
+                        int offset = row * numRegexes;
+                        for(int regexI = 0; regexI < numRegexes; ++regexI){
+                            if( starts[ offset + regexI ] >= 0 ){
+                                continue;
+                            }
+                            int firstRegexI = regexI;
+                            while( regexI + 1 < numRegexes && starts[ offset + regexI + 1 ] < 0 ){
+                                ++regexI;
+                            }
+                            addCount( blockCounts, ((long) firstRegexI << 32) | regexI, 1 );
+                        }
+                    }
+                    return blockCounts;
+                }
+            }) ){
+            for( Map.Entry<Long, long[]> entry : blockCounts.entrySet() ){
+                addCount( counts, entry.getKey(), entry.getValue()[0] );
+            }
+        }
+
+        List<MissedRun> runs = new ArrayList<MissedRun>( counts.size() );
+        for( Map.Entry<Long, long[]> entry : counts.entrySet() ){
+            runs.add( new MissedRun( (int) (entry.getKey() >>> 32), (int) (long) entry.getKey(), entry.getValue()[0] ) );
+        }
+        Collections.sort( runs, new Comparator<MissedRun>(){
+                public int compare( MissedRun a, MissedRun b ){
+                    if( a.count != b.count ){
+                        return Long.compare( b.count, a.count );
+                    }
+                    return ( a.firstRegexI != b.firstRegexI ) ? Integer.compare( a.firstRegexI, b.firstRegexI ) : Integer.compare( a.lastRegexI, b.lastRegexI );
+                }
+            });
+        return runs.subList( 0, Math.min( maxRuns, runs.size() ) );
+    }
+
+    private static void addCount( Map<Long, long[]> counts, Long key, long count ){
+        long[] value = counts.get( key );
+        if( value == null ){
+            counts.put( key, new long[]{ count } );
+        }else{
+            value[0] += count;
+        }
+    }
+
+    /**
+     * Histograms of where (relative to the length of the output) each regex is matched
+     * @param numBins Number of bins (e.g., 10 for each tenth of the output)
+     * @return The number of matches of each regex that start in each bin ([regex][bin])
+     */
+    public long[][] getPositionHistograms( int numBins ){
+        return getPositionHistograms( getRows(), numBins );
+    }
+
+    private long[][] getPositionHistograms( Rows rows, final int numBins ){
+        if( numBins < 1 ){
+            throw new IllegalArgumentException("Number of bins must be at least 1 (not " + numBins + ")");
+        }
+        final int[] starts = rows.starts;
+        final int[] lengths = rows.lengths;
+        long[][] histograms = new long[ numRegexes ][ numBins ];
+        for( long[] blockCounts : aggregateBlocks( rows.numRows, new BlockAggregator<long[]>(){
+                public long[] aggregate( int fromRow, int toRow ){
+                    long[] counts = new long[ numRegexes * numBins ];
+                    for( int row = fromRow; row < toRow; ++row){
+                        int offset = row * numRegexes;
+                        for(int regexI = 0; regexI < numRegexes; ++regexI){
+                            int start = starts[ offset + regexI ];
+                            if( start >= 0 ){
+                                int bin = (int) Math.min( numBins - 1, (long) start * numBins / Math.max( lengths[row], 1 ) );
+                                ++counts[ regexI * numBins + bin ];
+                            }
+                        }
+                    }
+                    return counts;
+                }
+            }) ){
+            for(int regexI = 0; regexI < numRegexes; ++regexI){
+                for( int bin = 0; bin < numBins; ++bin){
+                    histograms[regexI][bin] += blockCounts[ regexI * numBins + bin ];
+                }
+            }
+        }
+        return histograms;
+    }
+
+    /**
+     * Writes the miss rate of each regex, the most commonly missed runs of regexes and the histograms of where each regex is matched
+     * @param out Where to write the report
+     * @param maxRuns Maximum number of missed runs to list
+     * @param numBins Number of bins for the histograms
+     */
+    public void writeReport( Appendable out, int maxRuns, int numBins ) throws IOException{
+        Rows rows = getRows(); // (so that each part of the report is about the same submissions)
+        out.append( "Submissions: " + rows.numRows + "\n\n" );
+        out.append( "Miss rate of each regex:\n" );
+        double[] missRates = getMissRates( rows );
+        for(int regexI = 0; regexI < numRegexes; ++regexI){
+            out.append( String.format( "%4d\t%6.2f%%\t%s\n", regexI, 100 * missRates[regexI], regexes[regexI] ) );
+        }
+        out.append( "\nMost commonly missed runs of regexes:\n" );
+        for( MissedRun run : getMissedRuns( rows, maxRuns ) ){
+            String range = ( run.firstRegexI == run.lastRegexI ) ? Integer.toString( run.firstRegexI ) : run.firstRegexI + "-" + run.lastRegexI;
+            out.append( String.format( "%9s\t%d submissions\t%s\n", range, run.count, regexes[ run.firstRegexI ] + ( run.firstRegexI == run.lastRegexI ? "" : " ... " + regexes[ run.lastRegexI ] ) ) );
+        }
+        out.append( "\nWhere each regex is matched (number of matches starting in each 1/" + numBins + " of the output):\n" );
+        long[][] histograms = getPositionHistograms( rows, numBins );
+        for(int regexI = 0; regexI < numRegexes; ++regexI){
+            StringBuilder line = new StringBuilder( String.format( "%4d", regexI ) );
+            for( long count : histograms[regexI] ){
+                line.append( '\t' ).append( count );
+            }
+            out.append( line ).append( '\t' ).append( regexes[regexI] ).append( '\n' );
+        }
+    }
+
+    /**
+     * Writes the table to a file (through a memory mapping of a temporary file that is then renamed)
+     * @param filename Name of the file to write
+     */
+    public synchronized void write( String filename ) throws IOException{
+        List<byte[]> strings = new ArrayList<byte[]>( numRegexes + numRows );
+        long size = 4 * 4 + 4L * ( 2L * numRows * numRegexes + numRows );
+        for( String str : regexes ){
+            strings.add( str.getBytes( StandardCharsets.UTF_8 ) );
+        }
+        for( String name : names ){
+            strings.add( name.getBytes( StandardCharsets.UTF_8 ) );
+        }
+        for( byte[] bytes : strings ){
+            size += 4 + bytes.length;
+        }
+        if( size > Integer.MAX_VALUE ){
+            throw new IOException("Match table is too big to write (" + size + " bytes)");
+        }
+
+        File file = new File( filename ).getAbsoluteFile();
+        File tempFile = File.createTempFile( file.getName(), ".tmp", file.getParentFile() );
+        try{
+            RandomAccessFile randomAccessFile = new RandomAccessFile( tempFile, "rw" );
+            try{
+                randomAccessFile.setLength( size );
+                ByteBuffer buffer = randomAccessFile.getChannel().map( FileChannel.MapMode.READ_WRITE, 0, size );
+                buffer.putInt( MAGIC );
+                buffer.putInt( VERSION );
+                buffer.putInt( numRegexes );
+                buffer.putInt( numRows );
+                IntBuffer ints = buffer.asIntBuffer();
+                ints.put( starts, 0, numRows * numRegexes );
+                ints.put( ends, 0, numRows * numRegexes );
+                ints.put( lengths, 0, numRows );
+                buffer.position( buffer.position() + 4 * ints.position() );
+                for( byte[] bytes : strings ){
+                    buffer.putInt( bytes.length );
+                    buffer.put( bytes );
+                }
+            }finally{
+                randomAccessFile.close();
+            }
+            if( ! tempFile.renameTo( file ) ){
+                // e.g., Windows does not replace existing files
+                if( ! file.delete() || ! tempFile.renameTo( file ) ){
+                    throw new IOException("Unable to replace " + filename );
+                }
+            }
+        }finally{
+            tempFile.delete(); // nothing to delete if it was renamed
+        }
+    }
+
+    /**
+     * Reads a table written by write() (through a memory mapping of the file)
+     * @param filename Name of the file to read
+     * @return The table
+     * @throws IllegalArgumentException if the file is not a (valid) match table
+     */
+    public static MatchTable read( String filename ) throws IOException{
+        FileChannel channel = FileChannel.open( new File( filename ).toPath(), StandardOpenOption.READ );
+        ByteBuffer buffer;
+        try{
+            buffer = channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+        }finally{
+            channel.close(); // the mapping stays valid after the channel is closed
+        }
+
+        try{
+            if( buffer.getInt() != MAGIC ){
+                throw new IllegalArgumentException( filename + " is not a match table" );
+            }
+            int version = buffer.getInt();
+            if( version != VERSION ){
+                throw new IllegalArgumentException( filename + " is a version " + version + " match table (expected version " + VERSION + ")" );
+            }
+            int numRegexes = buffer.getInt();
+            int numRows = buffer.getInt();
+            if( numRegexes < 0 || numRows < 0 || 4L * ( 2L * numRows * numRegexes + numRows ) + 4L * ( numRegexes + numRows ) > buffer.remaining() ){
+                throw new IllegalArgumentException( filename + " is corrupt (invalid number of regexes or submissions)" );
+            }
+            int[] starts = new int[ Math.max( numRows, 1 ) * numRegexes ];
+            int[] ends = new int[ Math.max( numRows, 1 ) * numRegexes ];
+            int[] lengths = new int[ Math.max( numRows, 1 ) ];
+            IntBuffer ints = buffer.asIntBuffer();
+            ints.get( starts, 0, numRows * numRegexes );
+            ints.get( ends, 0, numRows * numRegexes );
+            ints.get( lengths, 0, numRows );
+            buffer.position( buffer.position() + 4 * ints.position() );
+            String[] regexes = new String[ numRegexes ];
+            for(int regexI = 0; regexI < numRegexes; ++regexI){
+                regexes[regexI] = readString( buffer );
+            }
+            MatchTable table = new MatchTable( regexes, 1 );
+            table.starts = starts;
+            table.ends = ends;
+            table.lengths = lengths;
+            table.numRows = numRows;
+            for( int row = 0; row < numRows; ++row){
+                table.names.add( readString( buffer ) );
+            }
+            return table;
+        }catch( BufferUnderflowException e ){
+            throw new IllegalArgumentException( filename + " is corrupt (truncated)" );
+        }
+    }
+
+    private static String readString( ByteBuffer buffer ){
+        int length = buffer.getInt();
+        if( length < 0 || length > buffer.remaining() ){
+            throw new IllegalArgumentException("Match table is corrupt (invalid string length)");
+        }
+        byte[] bytes = new byte[ length ];
+        buffer.get( bytes );
+        return new String( bytes, StandardCharsets.UTF_8 );
+    }
+
+    /**
+     * Writes the report (see writeReport()) for a match table file
+     */
+    public static void main( String[] args ) throws IOException{
+        if( args.length < 1 || args.length > 3 ){
+            System.err.println("Usage:  java MatchTable <match table filename> [<number of missed runs (default: 10)> [<number of histogram bins (default: 10)>]]");
+            System.exit(1);
+        }
+        try{
+            MatchTable table = read( args[0] );
+            int maxRuns = ( args.length > 1 ) ? Integer.parseInt( args[1] ) : 10;
+            int numBins = ( args.length > 2 ) ? Integer.parseInt( args[2] ) : 10;
+            table.writeReport( System.out, maxRuns, numBins );
+        }catch( IllegalArgumentException e ){
+            System.err.println("ERROR: " + e.getMessage() );
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,272 @@
+/**
+ * Finds the occurrences of a set of literals in a single pass over the text (Aho-Corasick, see Scanner).
+ * Transitions for US-ASCII characters are precomputed (i.e., one array lookup per character); other characters follow failure links.
+ * Just like LiteralPattern, when ignoring case only US-ASCII letters are matched without regard to case.
+ * Instances are immutable and thread-safe.
+ * @author Hyrum D. Carroll
+ * @version 1.0, (Oct 17, 2026)
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class MultiPatternMatcher{
+
+    private final static int ASCII_SIZE = 128;
+    private final static int ROOT = 0;
+
+    private final int numLiterals;
+    private final int[] literalLengths;
+    private final int[] firstDuplicate;               // index of the first literal that is the same as each literal (after folding)
+    private final boolean ignoreCase;
+
+    private final int[] asciiNext;                    // asciiNext[node * ASCII_SIZE + c] is the next node for c (after following failure links and folding c)
+    private final List<Map<Character, Integer>> next; // transitions for other characters (only the trie's edges; null if a node has none)
+    private final int[] fail;                         // node for the longest proper suffix that is also in the trie
+    private final int[] output;                       // literal that ends at each node (-1 if none)
+    private final int[] outputLink;                   // closest node along the failure links with an output (-1 if none)
+    private final boolean[] hasOutput;                // true if a literal ends at a node (or along its failure links)
+
+    /**
+     * @param literals Literals to search for (each with at least one character)
+     * @param ignoreCase true to match US-ASCII letters without regard to case
+     */
+    public MultiPatternMatcher( String[] literals, boolean ignoreCase ){
+        this.numLiterals = literals.length;
+        this.literalLengths = new int[ literals.length ];
+        this.firstDuplicate = new int[ literals.length ];
+        this.ignoreCase = ignoreCase;
+
+        // build the trie
+        List<int[]> asciiChildren = new ArrayList<int[]>();
+        List<Map<Character, Integer>> children = new ArrayList<Map<Character, Integer>>();
+        List<Integer> outputs = new ArrayList<Integer>();
+        asciiChildren.add( newAsciiChildren() );
+        children.add( null );
+        outputs.add( -1 );
+        for( int literalI = 0; literalI < literals.length; ++literalI){
+            String literal = literals[literalI];
+            if( literal.length() == 0 ){
+                throw new IllegalArgumentException("Literal can not be empty");
+            }
+            literalLengths[literalI] = literal.length();
+            int node = ROOT;
+            for( int i = 0; i < literal.length(); ++i){
+                char c = fold( literal.charAt(i) );
+                int child = getChild( asciiChildren, children, node, c );
+                if( child < 0 ){
+                    child = asciiChildren.size();
+                    asciiChildren.add( newAsciiChildren() );
+                    children.add( null );
+                    outputs.add( -1 );
+                    if( c < ASCII_SIZE ){
+                        asciiChildren.get( node )[c] = child;
+                    }else{
+                        if( children.get( node ) == null ){
+                            children.set( node, new HashMap<Character, Integer>() );
+                        }
+                        children.get( node ).put( c, child );
+                    }
+                }
+                node = child;
+            }
+            if( outputs.get( node ) < 0 ){
+                outputs.set( node, literalI );
+            }
+            firstDuplicate[literalI] = outputs.get( node ); // duplicate literals share the first one's output
+        }
+
+        int numNodes = asciiChildren.size();
+        this.next = children;
+        this.fail = new int[ numNodes ];
+        this.output = new int[ numNodes ];
+        this.outputLink = new int[ numNodes ];
+        this.asciiNext = new int[ numNodes * ASCII_SIZE ];
+        this.hasOutput = new boolean[ numNodes ];
+        for( int node = 0; node < numNodes; ++node){
+            output[node] = outputs.get( node );
+        }
+
+        // breadth-first, so that each node's failure link is set before its children's
+        int[] queue = new int[ numNodes ];
+        int head = 0;
+        int tail = 0;
+        outputLink[ROOT] = -1;
+        for( int c = 0; c < ASCII_SIZE; ++c){
+            int child = asciiChildren.get( ROOT )[c];
+            asciiNext[ c ] = ( child < 0 ) ? ROOT : child;
+        }
+        queue[tail++] = ROOT;
+        while( head < tail ){
+            int node = queue[head++];
+            int[] nodeAsciiChildren = asciiChildren.get( node );
+            for( int c = 0; c < ASCII_SIZE; ++c){
+                int child = nodeAsciiChildren[c];
+                if( child < 0 ){
+                    if( node != ROOT ){
+                        asciiNext[ node * ASCII_SIZE + c ] = asciiNext[ fail[node] * ASCII_SIZE + c ];
+                    }
+                }else{
+                    asciiNext[ node * ASCII_SIZE + c ] = child;
+                    setFailure( child, ( node == ROOT ) ? ROOT : asciiNext[ fail[node] * ASCII_SIZE + c ] );
+                    queue[tail++] = child;
+                }
+            }
+            if( children.get( node ) != null ){
+                for( Map.Entry<Character, Integer> edge : children.get( node ).entrySet() ){
+                    int child = edge.getValue();
+                    setFailure( child, ( node == ROOT ) ? ROOT : step( fail[node], edge.getKey() ) );
+                    queue[tail++] = child;
+                }
+            }
+        }
+
+        for( int node = 0; node < numNodes; ++node){
+            hasOutput[node] = output[node] >= 0 || outputLink[node] >= 0;
+            if( ignoreCase ){
+                // uppercase letters move to the same node as lowercase ones (so the text does not need to be folded)
+                for( int c = 'A'; c <= 'Z'; ++c){
+                    asciiNext[ node * ASCII_SIZE + c ] = asciiNext[ node * ASCII_SIZE + c + ('a' - 'A') ];
+                }
+            }
+        }
+    }
+
+    private static int[] newAsciiChildren(){
+        int[] asciiChildren = new int[ ASCII_SIZE ];
+        Arrays.fill( asciiChildren, -1 );
+        return asciiChildren;
+    }
+
+    private static int getChild( List<int[]> asciiChildren, List<Map<Character, Integer>> children, int node, char c ){
+        if( c < ASCII_SIZE ){
+            return asciiChildren.get( node )[c];
+        }
+        Map<Character, Integer> nodeChildren = children.get( node );
+        if( nodeChildren == null || ! nodeChildren.containsKey( c ) ){
+            return -1;
+        }
+        return nodeChildren.get( c );
+    }
+
+    private void setFailure( int node, int failNode ){
+        fail[node] = failNode;
+        outputLink[node] = ( output[failNode] >= 0 ) ? failNode : outputLink[failNode];
+    }
+
+    /**
+     * Moves from node on (folded) character c
+     */
+    private int step( int node, char c ){
+        if( c < ASCII_SIZE ){
+            return asciiNext[ node * ASCII_SIZE + c ];
+        }
+        while( true ){
+            Map<Character, Integer> nodeChildren = next.get( node );
+            Integer child = ( nodeChildren == null ) ? null : nodeChildren.get( c );
+            if( child != null ){
+                return child;
+            }
+            if( node == ROOT ){
+                return ROOT;
+            }
+            node = fail[node];
+        }
+    }
+
+    /**
+     * Folds US-ASCII uppercase letters to lowercase (if ignoring case)
+     */
+    private char fold( char c ){
+        if( ignoreCase && c >= 'A' && c <= 'Z' ){
+            return (char) ( c + ('a' - 'A') );
+        }
+        return c;
+    }
+
+    /**
+     * @param text Text to search
+     * @param startIndex Index in text to start reading from (occurrences before it are only found by rereading)
+     * @return A scanner that finds the occurrences of the literals in text (reading it only as far as needed)
+     */
+    public Scanner scan( CharSequence text, int startIndex ){
+        return new Scanner( text, startIndex );
+    }
+
+    /**
+     * Finds the occurrences of the literals in a text lazily: the text is read (once) only as far as it is needed to find the occurrence
+     * that is asked for, and only one occurrence of each literal is kept (instead of all of them), so the memory used does not depend on the text.
+     * Occurrences that were read past (e.g., when a later occurrence is asked for) are found again by rereading just that part of the text.
+     * Not thread-safe (create one for each text).
+     */
+    public class Scanner{
+        private final CharSequence text;
+        private final int textLength;
+        private int node = ROOT;
+        private int position;           // index of the next character of text to read
+        private final int[] occurrence; // first occurrence of each literal in the text read so far at or after from[literalI] (-1 if none)
+        private final int[] from;       // index that each occurrence was found from
+
+        Scanner( CharSequence text, int startIndex ){
+            this.text = text;
+            this.textLength = text.length();
+            this.position = startIndex;
+            this.occurrence = new int[ numLiterals ];
+            this.from = new int[ numLiterals ];
+            Arrays.fill( occurrence, -1 );
+            Arrays.fill( from, startIndex );
+        }
+
+        /**
+         * @param literalI Index of the literal
+         * @param fromIndex Index in the text to start searching from
+         * @return The index of the first character of the first occurrence of the literal at or after fromIndex (or -1 if there is none)
+         */
+        public int indexOf( int literalI, int fromIndex ){
+            literalI = firstDuplicate[literalI];
+            if( from[literalI] > fromIndex || ( occurrence[literalI] >= 0 && occurrence[literalI] < fromIndex ) ){
+                // the occurrence that was kept is not the first one at or after fromIndex, so reread the part of the text after fromIndex
+                occurrence[literalI] = reread( literalI, fromIndex );
+                from[literalI] = fromIndex;
+            }else if( occurrence[literalI] < 0 ){
+                from[literalI] = fromIndex; // (none of the text read so far has an occurrence at or after from[literalI], so none at or after fromIndex either)
+            }
+            while( occurrence[literalI] < 0 && position < textLength ){
+                char c = text.charAt( position );
+                node = ( c < ASCII_SIZE ) ? asciiNext[ node * ASCII_SIZE + c ] : step( node, c ); // (only US-ASCII letters are folded)
+                if( ! hasOutput[node] ){
+                    ++position;
+                    continue;
+                }
+                for( int outputNode = ( output[node] >= 0 ) ? node : outputLink[node]; outputNode >= 0; outputNode = outputLink[outputNode] ){
+                    int outputLiteralI = output[outputNode];
+                    int start = position - literalLengths[outputLiteralI] + 1;
+                    if( occurrence[outputLiteralI] < 0 && start >= from[outputLiteralI] ){
+                        occurrence[outputLiteralI] = start;
+                    }
+                }
+                ++position;
+            }
+            return occurrence[literalI];
+        }
+
+        /**
+         * @return The index of the first occurrence of the literal at or after fromIndex in the part of the text read so far (or -1 if there is none)
+         */
+        private int reread( int literalI, int fromIndex ){
+            int rereadNode = ROOT;
+            for( int i = fromIndex; i < position; ++i){
+                rereadNode = step( rereadNode, text.charAt(i) );
+                for( int outputNode = ( output[rereadNode] >= 0 ) ? rereadNode : outputLink[rereadNode]; outputNode >= 0; outputNode = outputLink[outputNode] ){
+                    if( output[outputNode] == literalI ){
+                        return i - literalLengths[literalI] + 1;
+                    }
+                }
+            }
+            return -1;
+        }
+    }
+}
@@ -6,23 +6,37 @@
 
 import java.util.Scanner;
 import java.io.Reader;
+import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.BufferedReader;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.Writer;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.regex.*;
 
 public class RefinedFeedback{
 
-    protected final static String USAGE = "Usage:  [--answer <answer key output filename>] [--explanations <explanations filename (English descriptions on their own line)>]  <regex>[ <regex> ...] (with stdin containing the output to match up with the regex)";
+    protected final static String USAGE = "Usage:  [--answer <answer key output filename>] [--explanations <explanations filename (English descriptions on their own line)>] [--batch <directory of outputs> | --watch <directory of outputs to grade as they arrive> [--feedback <feedback directory>] [--threads <number of threads>] [--match-table <match table filename to write (with --batch)>]] [--max-output-bytes <maximum number of bytes of output to keep>] [--regex-timeout <milliseconds>] [--submission-timeout <milliseconds>] [--engine sequential|single-pass|align] [--stats <statistics filename (.json or .csv)>] [--format text|json|binary] [--cache <result cache directory>] [--compile-rubric <rubric bundle filename to write>] [--lint warn|reject|rewrite] [--analyze <synthetic output length>] [--suggest <maximum number of edits>] [--stdin <filename of the input given to the program (to search for each regex in its part of the output)>]  <regex>[ <regex> ...] | --rubric <rubric bundle filename> (instead of --answer, --explanations and the regexes) | --manifest <test cases manifest filename> (instead of --answer, --explanations, the regexes and stdin, see ManifestGrader.java) (with stdin containing the output to match up with the regex, unless --batch or --watch is used)";
+
+    protected final static String[] OPTIONS_WITH_TRAILERS = { "--answer", "--explanations", "--batch", "--feedback", "--threads", "--max-output-bytes", "--regex-timeout", "--submission-timeout", "--engine", "--stats", "--compile-rubric", "--rubric", "--format", "--cache", "--lint", "--analyze", "--manifest", "--suggest", "--watch", "--match-table", "--stdin" }; // optional command-line arguments (each followed by a value)
+    protected final static String[] OPTIONS_WITH_PATHS = { "--answer", "--explanations", "--batch", "--feedback", "--stats", "--compile-rubric", "--rubric", "--cache", "--manifest", "--watch", "--match-table", "--stdin" }; // options whose value is a filename (or directory name)
     public final static String FLANKING_STR = "***";  // string appearing before and after matches
 
     public final static String PARAGRAPH_SYMBOL = "\u00B6"; // ¶, pilcrow (paragraph) symbol
 
     public final static String ALL_MATCHES_FOUND_MSG = "All matches found!  Great job!";  
     public final static String NO_MATCHES_FOUND_MSG = "No matches found :(";
+    public final static String TIMED_OUT_LABEL = "Timed out";  // displayed instead of "Missing" when the search for a regex took too long
+    public final static String STDIN_SUBMISSION_NAME = "stdin"; // name of the submission read from stdin (e.g., in the statistics)
 
     protected final static int DEFAULT_REGEX_FLAGS = Pattern.CASE_INSENSITIVE;  // if flags are not specified, then use this/these flags
 
@@ -61,6 +75,7 @@ public class RefinedFeedback{
      * Get all of the input 
      * @param input Input stream (e.g., stdin)
      * @return a string with all of the input from stdin
+     * @throws UncheckedIOException if the input can not be read
      */
     public static String getAllInput( InputStream input ){
         return getAllInput( new InputStreamReader( input ) );
@@ -70,7 +85,7 @@ public class RefinedFeedback{
     /**
      * Get all of the input 
      * @param filename Filename of file to be read
-     * @return a string with all of the input from stdin
+     * @return a string with all of the input from the file (or null if it can not be read)
      */
     public static String getAllInput( String filename ){
         FileReader fr = null;
@@ -80,7 +95,12 @@ public class RefinedFeedback{
             System.err.println("REFINED FEEDBACK ERROR: " + e.getMessage() );
             return null;
         }
-        return getAllInput( fr );
+        try{
+            return getAllInput( fr );
+        }catch( UncheckedIOException e ){
+            System.err.println("REFINED FEEDBACK ERROR: Unable to read " + filename + ": " + e.getCause().getMessage() );
+            return null;
+        }
     }
 
     
@@ -88,20 +108,23 @@ public class RefinedFeedback{
      * Get all of the input 
      * @param reader Input source (e.g., stdin, file object, etc.)
      * @return a string with all of the input from stdin
+     * @throws UncheckedIOException if the input can not be read (so that the caller decides whether to exit, e.g., not the server)
      */
     public static String getAllInput( Reader reader ){
         StringBuilder input = new StringBuilder();
         String ls = System.getProperty("line.separator");
+        BufferedReader br = new BufferedReader( reader );
         try{
-            BufferedReader br = new BufferedReader( reader );
-            String line = "";
-            while( (line = br.readLine()) != null ){
-                input.append( line + ls );
+            try{
+                String line = "";
+                while( (line = br.readLine()) != null ){
+                    input.append( line + ls );
+                }
+            }finally{
+                br.close();
             }
-            br.close();
         }catch( IOException e){
-            e.printStackTrace();
-            System.exit(1);
+            throw new UncheckedIOException( e );
         }
         return input.toString();
     }
@@ -125,35 +148,7 @@ public class RefinedFeedback{
      * @return An array of two-element arrays with each two-element array containing the index of first and last matching characters in the corresponding regex from the parameter list.  If a regex is not found, the elements are set to -1.
      */
     public static int[][] getMatchingIndices( String[] regexes, String text, int flags ){
-        //System.out.println("getMatchingIndices(regexes,"+text+","+flags+")");
-        int[][] matches = new int[regexes.length][2];
-    
-        // initalize index for starting search position
-        int startingSearchIndex = 0;
-        
-        // for each regex
-        for(int regexI = 0; regexI < regexes.length; ++regexI){
-            String regex = regexes[regexI];
-            
-            // search for first match (using flags)
-            Pattern p = Pattern.compile(regex, flags);
-            Matcher m = p.matcher(text.substring(startingSearchIndex));
-            // record match (if found)
-            int matchStartIndex = -1;
-            int matchEndIndex = -1;
-            if( m.find() ){
-                //System.out.println(m);
-                matchStartIndex = m.start() + startingSearchIndex;
-                matchEndIndex = m.end() - 1 + startingSearchIndex;
-                //System.out.println( "Searched for " + regex + " and found "+text.substring(matchStartIndex,matchEndIndex+1));
-                
-                // update starting search position
-                startingSearchIndex = matchEndIndex + 1;
-            }
-            matches[regexI][0] = matchStartIndex;
-            matches[regexI][1] = matchEndIndex;
-        }
-        return matches;
+        return new Rubric( regexes, flags ).getMatchingIndices( text );
     }
 
     /**
@@ -180,10 +175,19 @@ public class RefinedFeedback{
             return regexes;
         }
         
-        String[] matches = new String[ regexes.length ];
-
         // Get indices of matches for each regular expression element (against the answer key)
-        int[][] indices = getMatchingIndices( regexes, answerKey, flags );
+        return getAnswerKeyMatches( regexes, answerKey, getMatchingIndices( regexes, answerKey, flags ) );
+    }
+
+    /**
+     * Gets the part of the answer key that matched each of the regexes.  If a match was not found, an message is displayed to stderr and the regex is used instead.
+     * @param regexes Ordered list of regular expressions
+     * @param answerKey Text the matches were found in
+     * @param indices First and last indices of matches of the regular expressions in answerKey
+     * @return Array of the matches in the answer key (or the regex if not found)
+     */
+    public static String[] getAnswerKeyMatches( String[] regexes, String answerKey, int[][] indices ){
+        String[] matches = new String[ regexes.length ];
 
         int textStartIndex = -1; // index of the first character in answerKey that matches regex
         int textEndIndex   = -1; // index of the last  character in answerKey that matched the last matching regex
@@ -209,6 +213,7 @@ public class RefinedFeedback{
      * For each non-empty/blank line in explanationsFilename, replace the cooresponding elemetn in answerKeyMatches
      * @param answerKeyMatches Current answer key matches
      * @param explanationsFilename Filename for file with regex explanations (one on each line)
+     * @throws IllegalArgumentException if the explanations file can not be read or has more explanations than answerKeyMatches
      */
     public static void updateAnswerKeyMatches( String[] answerKeyMatches, String explanationsFilename ){
 
@@ -221,6 +226,9 @@ public class RefinedFeedback{
     
         String explanationsFileContents = getAllInput( explanationsFilename );
         //System.err.println("explanationsFileContents: "+explanationsFileContents);
+        if( explanationsFileContents == null ){
+            throw new IllegalArgumentException("Unable to read explanations file " + explanationsFilename );
+        }
         
         if( explanationsFileContents.endsWith("\n") ){
             // if the last character is a newline, then remove it
@@ -229,15 +237,16 @@ public class RefinedFeedback{
         
         String[] explanationsStrs = explanationsFileContents.split( "\n" ); // assumes that each explanation string is on its own line
         if( explanationsStrs.length > answerKeyMatches.length ){
-            System.err.println("ERROR: Found more explanation strings ("+explanationsStrs.length+") than answer key items / regular expressions ("+answerKeyMatches.length+")!");
-            System.exit(1);
+            throw new IllegalArgumentException("Found more explanation strings ("+explanationsStrs.length+") than answer key items / regular expressions ("+answerKeyMatches.length+")!");
         }
         
         for(int i = 0; i < explanationsStrs.length; ++i){
             String eStr = explanationsStrs[i];
             if( eStr.length() > 0 ){
                 // update only non-empty explanation strings
-                DEBUG( "Updating answer key at position "+(i+1)+" (\""+answerKeyMatches[i]+"\") with \""+eStr+"\"");
+                if( DEBUG ){
+                    DEBUG( "Updating answer key at position "+(i+1)+" (\""+answerKeyMatches[i]+"\") with \""+eStr+"\"");
+                }
                 answerKeyMatches[i] = explanationsStrs[i];
             }
         }
@@ -245,6 +254,32 @@ public class RefinedFeedback{
 
     
     
+    /**
+     * Counts the number of regexes that were found
+     * @param indices First and last indices of matches of the regular expressions
+     * @return Number of matches found
+     */
+    public static int getNumMatches( int[][] indices ){
+        int numMatches = 0;
+        for( int i = 0; i < indices.length; ++i){
+            if( indices[i][0] >= 0 ){
+                ++numMatches;
+            }
+        }
+        return numMatches;
+    }
+
+    /**
+     * @param regexIndices First and last indices of the match of a regex that was not found
+     * @return "Missing" (or TIMED_OUT_LABEL if the search took too long)
+     */
+    public static String getMissingLabel( int[] regexIndices ){
+        if( regexIndices[0] == Rubric.TIMED_OUT ){
+            return TIMED_OUT_LABEL;
+        }
+        return "Missing";
+    }
+
     /**
      * Generate the annotated view (matches indicated with UPPERCASE letters and flanked by ***) 
      * @param regexes Ordered list of regular expressions
@@ -253,66 +288,13 @@ public class RefinedFeedback{
      * @param answerKeyMatches Matches for the regexes from the answer key (for displaying if the regex is not found in the text)
      * @return A string with the full annotated view
      */
-    public static String getAnnotatedView( String[] regexes, String text, int[][] indices, String[] answerKeyMatches ){
-        assert regexes.length == indices.length : "Number of regexes + ("+regexes.length+ ") differs from the number of indices of those matches ("+indices.length+")";
-        
+    public static String getAnnotatedView( String[] regexes, CharSequence text, int[][] indices, String[] answerKeyMatches ){
         StringBuilder output = new StringBuilder(); // For matches captialized and flanked with ***
-
-        // Figure out if 1) there are no matches, 2) at least one or 3) everything matches
-        int numMatches = 0;
-        for( int i = 0; i < indices.length; ++i){
-            if( indices[i][0] >= 0 ){
-                ++numMatches;
-            }
-        }
-        
-        if( numMatches == indices.length ){
-            // found all matches :)
-            output.append( "\n" + ALL_MATCHES_FOUND_MSG + "\n");
-        }
-        String numMatchesStr = " ("+numMatches+" of " + indices.length + " matches found)";
-        output.append("\nAnnotated Matches View" + numMatchesStr + "\n");
-        output.append("(Matches are uppercased and indicated with *** before and after the match)\n");
-        output.append("(Terms that are missing are identified with '<<< Missing: [the missing item] >>>')\n");        
-        output.append("==========================================================================\n");
-
-        int textStartIndex = -1; // index of the first character in text that matches regex
-        int textEndIndex   = -1; // index of the last  character in text that matched the last matching regex
-        StringBuilder missingStr = new StringBuilder(); // lines to be added to the output with missed matches
-        for(int regexI = 0; regexI < regexes.length; ++regexI){
-            String regexStr = "";
-            if( DEBUG ){ regexStr = " (" + regexes[regexI] + ")";  }
-            textStartIndex = indices[regexI][0]; // index of the first character in text that matches regex
-            
-            if( textStartIndex < 0 ){
-                // no match found for this regex
-                String answerKeyMatch = answerKeyMatches[regexI];
-                if( regexI != 0 ){
-                    missingStr.append("\n");
-                }
-                missingStr.append( "\n<<< Missing: " + answerKeyMatch + regexStr + " >>>\n");
-                // Continue to display other missing regexes without the extra newline 
-                while( regexI + 1 < regexes.length && indices[regexI + 1][0] < 0){
-                    ++regexI;
-                    if( DEBUG ){ regexStr = " (" + regexes[regexI] + ")";  }
-                    answerKeyMatch = answerKeyMatches[regexI];
-                    missingStr.append( "\n<<< Missing: " + answerKeyMatch + regexStr + " >>>\n");
-                }
-                missingStr.append( "\n" );
-            }else{
-                // copy of text before this match (if any) (and add in pilcrow to visualize the newline)
-                output.append( text.substring( textEndIndex + 1, textStartIndex ).replace("\n", PARAGRAPH_SYMBOL + "\n" ) );
-                // add in lines about missed matches, if any
-                output.append( missingStr );
-                missingStr.setLength(0); // clear out
-                textEndIndex = indices[regexI][1]; // only update if there was a match so that it is the last matched index
-                output.append( FLANKING_STR + text.substring( textStartIndex, textEndIndex + 1).toUpperCase().replace("\n", PARAGRAPH_SYMBOL + "\n" ) + FLANKING_STR ); // capitalized match with flanking strings
-            }
-            DEBUG("output: " + output);
+        try{
+            new AnnotatedViewWriter( output, false ).write( regexes, text, indices, answerKeyMatches );
+        }catch( IOException e ){
+            throw new IllegalStateException( e ); // not possible for a StringBuilder
         }
-        output.append( text.substring( textEndIndex + 1, text.length() ) ); // copy of output until the end
-        output.append( missingStr );
-        
         return output.toString();
     }
 
@@ -338,24 +320,375 @@ public class RefinedFeedback{
         return null; // not found
     }
     
+    /**
+     * Calculates the index where the regexes start in args (assuming that all of the optional args are before the regexes)
+     * @param args Command-line arguments
+     * @return Index of the first regex in args
+     */
+    public static int getRegexArgsStartIndex( String[] args ){
+        int regexArgsStartIndex = 0;
+        for( String option : OPTIONS_WITH_TRAILERS ){
+            if( getArgTrailer( option, args ) != null ){
+                regexArgsStartIndex += 2;
+            }
+        }
+        return regexArgsStartIndex;
+    }
+
+    /**
+     * Reads in the answer key (if any) and finds the matches for each regex in it, then overrides those matches with the explanations (if any)
+     * @param regexes Ordered list of regular expressions
+     * @param answerKeyFilename Filename of the answer key output (or null)
+     * @param explanationsFilename Filename for file with regex explanations (one on each line) (or null)
+     * @return Array of strings to display for each regex if it is not found
+     * @throws IllegalArgumentException if the explanations file can not be read or has more explanations than regexes
+     */
+    public static String[] loadAnswerKeyMatches( String[] regexes, String answerKeyFilename, String explanationsFilename ){
+        return loadAnswerKeyMatches( regexes, DEFAULT_REGEX_FLAGS, answerKeyFilename, explanationsFilename );
+    }
+
+    /**
+     * Reads in the answer key (if any) and finds the matches for each regex in it (according to the supplied flags), then overrides those matches with the explanations (if any)
+     * @param regexes Ordered list of regular expressions
+     * @param flags Flags to be used for each match
+     * @param answerKeyFilename Filename of the answer key output (or null)
+     * @param explanationsFilename Filename for file with regex explanations (one on each line) (or null)
+     * @return Array of strings to display for each regex if it is not found
+     * @throws IllegalArgumentException if the explanations file can not be read or has more explanations than regexes
+     */
+    public static String[] loadAnswerKeyMatches( String[] regexes, int flags, String answerKeyFilename, String explanationsFilename ){
+        // if the answer key was passed in, then read in the answer key file
+        String answerKey = null;
+        if( answerKeyFilename != null ){
+            // Read in answer key file
+            answerKey = getAllInput( answerKeyFilename );
+        }
+        if( DEBUG ){
+            DEBUG( "answerKey: " + answerKey);
+        }
+        
+        String[] answerKeyMatches = getAnswerKeyMatches( regexes, answerKey, flags );
+
+        // if the file with the explanations for each of the terms is passed in, then override the answerKeyMatches
+        if( explanationsFilename != null ){
+            if( answerKeyMatches == regexes ){
+                answerKeyMatches = regexes.clone(); // do not override the regexes themselves
+            }
+            updateAnswerKeyMatches( answerKeyMatches, explanationsFilename );
+        }
+        return answerKeyMatches;
+    }
+
+    /**
+     * Reads in the regexes from a file with them written as shell command-line arguments (e.g., "Welcome" "98\\.8" as in regexes-cpsc1302-project4.txt)
+     * @param regexesFilename Filename of the regexes
+     * @return Ordered list of regular expressions
+     * @throws IllegalArgumentException if the file can not be read or has an unterminated quote
+     */
+    public static String[] readRegexesFile( String regexesFilename ){
+        String contents = getAllInput( regexesFilename );
+        if( contents == null ){
+            throw new IllegalArgumentException("Unable to read regexes file " + regexesFilename );
+        }
+        return parseShellWords( contents );
+    }
+
+    /**
+     * Splits text into words the same way that a (POSIX) shell does, with single quotes, double quotes and backslashes (but no expansions)
+     * @param text Text with the words (e.g., "Welcome" 'options' "98\\.8")
+     * @return The words, with quotes removed
+     * @throws IllegalArgumentException if text has an unterminated quote
+     */
+    public static String[] parseShellWords( String text ){
+        List<String> words = new ArrayList<String>();
+        StringBuilder word = null; // null between words
+        for( int i = 0; i < text.length(); ++i){
+            char c = text.charAt(i);
+            if( Character.isWhitespace( c ) ){
+                if( word != null ){
+                    words.add( word.toString() );
+                    word = null;
+                }
+                continue;
+            }
+            if( word == null ){
+                word = new StringBuilder();
+            }
+            if( c == '\'' ){
+                int end = text.indexOf( '\'', i + 1 );
+                if( end < 0 ){
+                    throw new IllegalArgumentException("Unterminated ' in: " + text );
+                }
+                word.append( text, i + 1, end );
+                i = end;
+            }else if( c == '"' ){
+                for( ++i; i < text.length() && text.charAt(i) != '"'; ++i){
+                    c = text.charAt(i);
+                    // inside of double quotes, a backslash only escapes $, `, ", \ and newlines
+                    if( c == '\\' && i + 1 < text.length() && "$`\"\\\n".indexOf( text.charAt( i + 1 ) ) >= 0 ){
+                        c = text.charAt( ++i );
+                        if( c == '\n' ){
+                            continue;
+                        }
+                    }
+                    word.append( c );
+                }
+                if( i >= text.length() ){
+                    throw new IllegalArgumentException("Unterminated \" in: " + text );
+                }
+            }else if( c == '\\' && i + 1 < text.length() ){
+                c = text.charAt( ++i );
+                if( c != '\n' ){
+                    word.append( c );
+                }
+            }else{
+                word.append( c );
+            }
+        }
+        if( word != null ){
+            words.add( word.toString() );
+        }
+        return words.toArray( new String[ words.size() ] );
+    }
+
+    /**
+     * Generates the feedback for a submission (i.e., the annotated view, escaped for codePost)
+     * @param rubric Precompiled regexes
+     * @param answerKeyMatches Matches for the regexes from the answer key (for displaying if the regex is not found in the text)
+     * @param outputStr Output of a student's submission
+     * @return The annotated view with each \ escaped
+     */
+    public static String getFeedback( Rubric rubric, String[] answerKeyMatches, CharSequence outputStr ){
+        // Get indices of matches for each regular expression element (against the submission)
+        int[][] indices = rubric.getMatchingIndices( outputStr );
+        return getFeedback( rubric, answerKeyMatches, outputStr, indices );
+    }
+
+    /**
+     * Generates the feedback for a submission (i.e., the annotated view, escaped for codePost)
+     * @param rubric Precompiled regexes
+     * @param answerKeyMatches Matches for the regexes from the answer key (for displaying if the regex is not found in the text)
+     * @param outputStr Output of a student's submission
+     * @param indices First and last indices of matches of the regular expressions in rubric in outputStr
+     * @return The annotated view with each \ escaped
+     */
+    public static String getFeedback( Rubric rubric, String[] answerKeyMatches, CharSequence outputStr, int[][] indices ){
+        StringBuilder output = new StringBuilder();
+        try{
+            writeFeedback( output, rubric, answerKeyMatches, outputStr, indices );
+        }catch( IOException e ){
+            throw new IllegalStateException( e ); // not possible for a StringBuilder
+        }
+        return output.toString();
+    }
+
+    /**
+     * Writes the feedback for a submission (i.e., the annotated view, escaped for codePost) without building it as a string first
+     * (with a suggestion for each missing literal if rubric has them, see Rubric.withSuggestions())
+     * @param out Where to write the feedback (e.g., System.out)
+     * @param rubric Precompiled regexes
+     * @param answerKeyMatches Matches for the regexes from the answer key (for displaying if the regex is not found in the text)
+     * @param outputStr Output of a student's submission
+     * @param indices First and last indices of matches of the regular expressions in rubric in outputStr
+     */
+    public static void writeFeedback( Appendable out, Rubric rubric, String[] answerKeyMatches, CharSequence outputStr, int[][] indices ) throws IOException{
+        /*
+         * Display the annotated output (with flanking "***"s and capitalized matches)
+         */
+        RubricListener listener = rubric.getListener();
+        long startTime = ( listener != null ) ? System.nanoTime() : 0;
+        int[][] suggestions = ( rubric.getMaxSuggestionDistance() > 0 ) ? ApproximateMatcher.findSuggestions( rubric, outputStr, indices ) : null;
+        new AnnotatedViewWriter( out, true ).write( rubric.getRegexes(), outputStr, indices, answerKeyMatches, suggestions );  // codePost does not display output if it has an unescaped \ in it :(
+        if( listener != null ){
+            listener.submissionRendered( outputStr.length(), System.nanoTime() - startTime );
+        }
+    }
+    
+    /**
+     * Compiles the regexes and applies the options for matching (e.g., time limits) from the command-line arguments
+     * @param regexes Ordered list of regular expressions
+     * @param args Command-line arguments
+     * @return The compiled regexes
+     * @throws IllegalArgumentException if an option has an invalid value
+     */
+    public static Rubric newRubric( String[] regexes, String[] args ){
+        return applyOptions( new Rubric( regexes ), args );
+    }
+
+    /**
+     * Applies the options for matching (e.g., time limits) from the command-line arguments to rubric
+     * @param rubric Compiled regexes
+     * @param args Command-line arguments
+     * @return rubric with the options applied
+     * @throws IllegalArgumentException if an option has an invalid value
+     */
+    public static Rubric applyOptions( Rubric rubric, String[] args ){
+        String regexTimeoutStr = getArgTrailer( "--regex-timeout", args );
+        String submissionTimeoutStr = getArgTrailer( "--submission-timeout", args );
+        if( regexTimeoutStr != null || submissionTimeoutStr != null ){
+            long regexTimeoutMillis = ( regexTimeoutStr != null ) ? Long.parseLong( regexTimeoutStr ) : 0;
+            long submissionTimeoutMillis = ( submissionTimeoutStr != null ) ? Long.parseLong( submissionTimeoutStr ) : 0;
+            rubric = rubric.withTimeouts( regexTimeoutMillis, submissionTimeoutMillis );
+        }
+        String engineStr = getArgTrailer( "--engine", args );
+        if( engineStr != null ){
+            // e.g., single-pass for Rubric.Engine.SINGLE_PASS
+            Rubric.Engine engine;
+            try{
+                engine = Rubric.Engine.valueOf( engineStr.toUpperCase().replace( '-', '_' ) );
+            }catch( IllegalArgumentException e ){
+                throw new IllegalArgumentException("Unknown engine: " + engineStr );
+            }
+            rubric = rubric.withEngine( engine );
+        }
+        String cacheDirname = getArgTrailer( "--cache", args );
+        if( cacheDirname != null ){
+            rubric = rubric.withResultCache( ResultCache.forDirectory( new File( cacheDirname ) ) );
+        }
+        String suggestStr = getArgTrailer( "--suggest", args );
+        if( suggestStr != null ){
+            rubric = rubric.withSuggestions( Integer.parseInt( suggestStr ) );
+        }
+        return rubric;
+    }
+
+    /**
+     * Checks the regexes for issues (see RubricAnalyzer) as requested by --lint:
+     *   warn:    each issue is written to stderr
+     *   reject:  any issue is an error
+     *   rewrite: greedy wildcards are made reluctant (e.g., .* to .*?) and any other issue is an error
+     * @param regexes Ordered list of regular expressions
+     * @param flags Flags that the regexes are compiled with
+     * @param args Command-line arguments
+     * @return regexes (or a rewritten copy of them)
+     * @throws IllegalArgumentException if a regex is rejected or the mode is unknown
+     */
+    public static String[] lintRegexes( String[] regexes, int flags, String[] args ){
+        String lintMode = getArgTrailer( "--lint", args );
+        if( lintMode == null ){
+            return regexes;
+        }
+        if( ! lintMode.equals("warn") && ! lintMode.equals("reject") && ! lintMode.equals("rewrite") ){
+            throw new IllegalArgumentException("Unknown lint mode: " + lintMode );
+        }
+        RubricAnalyzer analyzer = new RubricAnalyzer( flags, RubricAnalyzer.DEFAULT_OUTPUT_LENGTH, RubricAnalyzer.DEFAULT_LINE_LENGTH );
+        RubricAnalyzer.Analysis[] analyses = analyzer.analyze( regexes );
+        if( lintMode.equals("rewrite") ){
+            regexes = regexes.clone();
+            for(int regexI = 0; regexI < regexes.length; ++regexI){
+                if( ! analyses[regexI].getReluctant().equals( regexes[regexI] ) ){
+                    regexes[regexI] = analyses[regexI].getReluctant();
+                    DEBUG( "Rewrote regex " + regexI + " as " + regexes[regexI] );
+                }
+            }
+            analyses = analyzer.analyze( regexes );
+        }
+        StringBuilder issues = new StringBuilder();
+        for(int regexI = 0; regexI < regexes.length; ++regexI){
+            for( RubricAnalyzer.Issue issue : analyses[regexI].issues ){
+                String issueStr = "Regex " + regexI + " (" + regexes[regexI] + "): " + issue.type + ": " + issue.message;
+                if( lintMode.equals("warn") ){
+                    System.err.println("WARNING: " + issueStr );
+                }else{
+                    issues.append( issues.length() > 0 ? "\n" : "" ).append( issueStr );
+                }
+            }
+        }
+        if( issues.length() > 0 ){
+            throw new IllegalArgumentException( issues.toString() );
+        }
+        return regexes;
+    }
+
+    /**
+     * Finds the output format from the command-line arguments
+     * @param args Command-line arguments
+     * @return The format following --format (or TEXT if it is not present)
+     * @throws IllegalArgumentException if the format is unknown
+     */
+    public static MatchResultWriter.Format getFormat( String[] args ){
+        String formatStr = getArgTrailer( "--format", args );
+        return ( formatStr != null ) ? MatchResultWriter.parseFormat( formatStr ) : MatchResultWriter.Format.TEXT;
+    }
+
+    /**
+     * Finds the maximum number of bytes of output to keep from the command-line arguments
+     * @param args Command-line arguments
+     * @return The value following --max-output-bytes (or the default if it is not present)
+     */
+    public static long getMaxOutputBytes( String[] args ){
+        String maxOutputBytesStr = getArgTrailer( "--max-output-bytes", args );
+        if( maxOutputBytesStr == null ){
+            return BoundedInput.DEFAULT_MAX_BYTES;
+        }
+        long maxOutputBytes = Long.parseLong( maxOutputBytesStr );
+        if( maxOutputBytes < 2 ){
+            throw new IllegalArgumentException("The maximum number of bytes of output must be at least 2 (not " + maxOutputBytes + ")");
+        }
+        return maxOutputBytes;
+    }
+    
     public static void main( String[] args ){
+        run( args, null );
+    }
+
+    /**
+     * Same as main(), but with the output of the submission already read in
+     * @param args Command-line arguments
+     * @param outputStr Output of a student's submission (if null, then it is read from stdin)
+     */
+    public static void run( String[] args, CharSequence outputStr ){
 
 
         /* Get the regular expression from the command-line */
 
         String answerKeyFilename = getArgTrailer( "--answer", args );
         String explanationsFilename  = getArgTrailer( "--explanations", args );
+        String batchDirname  = getArgTrailer( "--batch", args );
+        String statsFilename  = getArgTrailer( "--stats", args );
+        String compileRubricFilename  = getArgTrailer( "--compile-rubric", args );
+        String rubricFilename  = getArgTrailer( "--rubric", args );
+        String manifestFilename  = getArgTrailer( "--manifest", args );
+        String watchDirname  = getArgTrailer( "--watch", args );
+        String matchTableFilename  = getArgTrailer( "--match-table", args );
+        String stdinFilename  = getArgTrailer( "--stdin", args );
 
         // calculate the index where the regexes start (assuming that the above optional args are before the regexes)
-        int regexArgsStartIndex = 0;
-        if( answerKeyFilename != null ){
-            regexArgsStartIndex += 2;
+        int regexArgsStartIndex = getRegexArgsStartIndex( args );
+        
+        if( watchDirname != null && ( batchDirname != null || statsFilename != null || manifestFilename != null ) ){
+            System.err.println("ERROR: --watch can not be used with --batch, --stats or --manifest!\n");
+            System.err.println("\n" + USAGE + "\n");
+            System.exit(1);
         }
-        if( explanationsFilename != null ){
-            regexArgsStartIndex += 2;
+        if( stdinFilename != null && ( batchDirname != null || watchDirname != null || manifestFilename != null ) ){
+            System.err.println("ERROR: --stdin can not be used with --batch, --watch or --manifest!\n");
+            System.err.println("\n" + USAGE + "\n");
+            System.exit(1);
         }
-        
-        if( regexArgsStartIndex >= args.length ){
+        if( matchTableFilename != null && batchDirname == null ){
+            System.err.println("ERROR: --match-table can only be used with --batch!\n");
+            System.err.println("\n" + USAGE + "\n");
+            System.exit(1);
+        }
+        if( manifestFilename != null ){
+            // the regexes, answer keys, explanations and outputs all come from the manifest
+            if( regexArgsStartIndex < args.length || answerKeyFilename != null || explanationsFilename != null || rubricFilename != null
+                || batchDirname != null || statsFilename != null || compileRubricFilename != null ){
+                System.err.println("ERROR: --manifest can not be used with --answer, --explanations, --rubric, --batch, --stats, --compile-rubric or regexes!\n");
+                System.err.println("\n" + USAGE + "\n");
+                System.exit(1);
+            }
+            gradeManifest( manifestFilename, args );
+            return;
+        }else if( rubricFilename != null ){
+            // the regexes and display strings all come from the bundle
+            if( regexArgsStartIndex < args.length || answerKeyFilename != null || explanationsFilename != null || compileRubricFilename != null ){
+                System.err.println("ERROR: --rubric can not be used with --answer, --explanations, --compile-rubric or regexes!\n");
+                System.err.println("\n" + USAGE + "\n");
+                System.exit(1);
+            }
+        }else if( regexArgsStartIndex >= args.length ){
             System.err.println("ERROR: No regexes found from command-line arguments!\n");
             System.err.println("\n" + USAGE + "\n");
             System.exit(1);
@@ -363,35 +696,216 @@ public class RefinedFeedback{
 
         // Copy the rest of the command-line arguments (the regexes) 
         String[] regexes = Arrays.copyOfRange( args, regexArgsStartIndex, args.length );
-        DEBUG("regexes (starting from command-line argument index " + regexArgsStartIndex + "):");
-        DEBUG(regexes);
+        if( DEBUG ){
+            DEBUG("regexes (starting from command-line argument index " + regexArgsStartIndex + "):");
+            DEBUG(regexes);
+        }
 
-        // if the answer key was passed in, then read in the answer key file
-        String answerKey = null;
-        if( answerKeyFilename != null ){
-            // Read in answer key file
-            answerKey = getAllInput( answerKeyFilename );
+        String[] answerKeyMatches = null;
+        long maxOutputBytes = 0;
+        MatchResultWriter.Format format = null;
+        Rubric rubric = null;
+        Transcript transcript = null;
+        int[] transcriptSegments = null; // segment of each regex (found with the answer key)
+        try{
+            maxOutputBytes = getMaxOutputBytes( args );
+            format = getFormat( args );
+            if( compileRubricFilename != null ){
+                new Rubric( regexes ); // so that invalid regexes are reported before the bundle is written
+                regexes = lintRegexes( regexes, DEFAULT_REGEX_FLAGS, args );
+                RubricBundle.compile( regexes, answerKeyFilename, explanationsFilename ).write( compileRubricFilename );
+                System.out.println("Compiled " + regexes.length + " regexes into " + compileRubricFilename );
+                return;
+            }
+            RubricBundle bundle = null;
+            int flags = DEFAULT_REGEX_FLAGS;
+            if( rubricFilename != null ){
+                bundle = RubricBundle.load( rubricFilename );
+                regexes = bundle.getRegexes();
+                flags = bundle.getFlags();
+            }
+            String analyzeLengthStr = getArgTrailer( "--analyze", args );
+            if( analyzeLengthStr != null ){
+                new Rubric( regexes, flags ); // so that invalid regexes are reported instead of analyzed
+                RubricAnalyzer analyzer = new RubricAnalyzer( flags, Long.parseLong( analyzeLengthStr ), RubricAnalyzer.DEFAULT_LINE_LENGTH );
+                RubricAnalyzer.writeReport( System.out, analyzer.analyze( regexes ) );
+                return;
+            }
+            String[] lintedRegexes = lintRegexes( regexes, flags, args );
+            if( stdinFilename != null ){
+                transcript = Transcript.read( stdinFilename );
+            }
+            if( bundle != null ){
+                // the display strings are still the ones found with the bundle's regexes
+                rubric = applyOptions( lintedRegexes != regexes ? new Rubric( lintedRegexes, flags ) : bundle.toRubric(), args );
+                regexes = lintedRegexes;
+                answerKeyMatches = bundle.getAnswerKeyMatches();
+            }else{
+                regexes = lintedRegexes;
+                rubric = newRubric( regexes, args );
+                String answerKey = ( transcript != null && answerKeyFilename != null ) ? getAllInput( answerKeyFilename ) : null;
+                if( answerKey != null ){
+                    // each regex is found in (and then searched for in) its segment of the answer key
+                    transcriptSegments = new int[ rubric.size() ];
+                    answerKeyMatches = getAnswerKeyMatches( regexes, answerKey, transcript.findSegments( rubric, answerKey, transcriptSegments ) );
+                    updateAnswerKeyMatches( answerKeyMatches, explanationsFilename );
+                }else{
+                    answerKeyMatches = loadAnswerKeyMatches( regexes, answerKeyFilename, explanationsFilename );
+                }
+            }
+        }catch( IllegalArgumentException e ){
+            System.err.println("ERROR: " + e.getMessage() );
+            System.exit(1);
+        }catch( IOException e ){
+            System.err.println("ERROR: Unable to read or write the rubric bundle (" + e + ")" );
+            System.exit(1);
+        }
+        MatchStatistics statistics = null;
+        if( statsFilename != null ){
+            statistics = new MatchStatistics( rubric );
+            rubric = rubric.withListener( statistics );
         }
-        DEBUG( "answerKey: " + answerKey);
-        
-        String[] answerKeyMatches = getAnswerKeyMatches( regexes, answerKey );
 
-        // if the file with the explanations for each of the terms is passed in, then override the answerKeyMatches
-        if( explanationsFilename != null ){
-            updateAnswerKeyMatches( answerKeyMatches, explanationsFilename );
+        if( batchDirname != null ){
+            String feedbackDirname = getArgTrailer( "--feedback", args );
+            String threadsStr = getArgTrailer( "--threads", args );
+            int threads = Runtime.getRuntime().availableProcessors();
+            if( threadsStr != null ){
+                threads = Integer.parseInt( threadsStr );
+            }
+            MatchTable matchTable = ( matchTableFilename != null ) ? new MatchTable( regexes ) : null;
+            BatchGrader grader = new BatchGrader( rubric, answerKeyMatches, threads, maxOutputBytes, format, matchTable );
+            boolean graded = grader.gradeDirectory( batchDirname, feedbackDirname );
+            writeStatistics( statistics, statsFilename );
+            if( matchTable != null ){
+                try{
+                    matchTable.write( matchTableFilename );
+                }catch( IOException e ){
+                    System.err.println("REFINED FEEDBACK ERROR: Unable to write match table " + matchTableFilename + " (" + e.getMessage() + ")" );
+                    graded = false;
+                }
+            }
+            if( ! graded ){
+                System.exit(1);
+            }
+            return;
+        }
+
+        if( watchDirname != null ){
+            String feedbackDirname = getArgTrailer( "--feedback", args );
+            String threadsStr = getArgTrailer( "--threads", args );
+            int threads = Runtime.getRuntime().availableProcessors();
+            if( threadsStr != null ){
+                threads = Integer.parseInt( threadsStr );
+            }
+            BatchGrader grader = new BatchGrader( rubric, answerKeyMatches, threads, maxOutputBytes, format );
+            try{
+                File feedbackDir = ( feedbackDirname != null ) ? new File( feedbackDirname ) : null;
+                new DirectoryWatcher( grader, format, new File( watchDirname ), feedbackDir, threads, DirectoryWatcher.DEFAULT_DEBOUNCE_MILLIS ).watch();
+            }catch( IllegalArgumentException e ){
+                System.err.println("ERROR: " + e.getMessage() );
+                System.exit(1);
+            }catch( IOException e ){
+                System.err.println("REFINED FEEDBACK ERROR: " + e.getMessage() );
+                System.exit(1);
+            }
+            return;
         }
         
-        String outputStr = getAllInput( new InputStreamReader(System.in) );
-        DEBUG( "outputStr (" + outputStr.length() + " characters): " + outputStr);
+        if( outputStr == null ){
+            try{
+                outputStr = BoundedInput.read( System.in, maxOutputBytes );
+            }catch( IOException e ){
+                e.printStackTrace();
+                System.exit(1);
+            }
+        }
+        if( DEBUG ){
+            DEBUG( "outputStr (" + outputStr.length() + " characters): " + outputStr);
+        }
+        if( rubric.getListener() != null ){
+            rubric.getListener().submissionStarted( STDIN_SUBMISSION_NAME );
+        }
         
         // Get indices of matches for each regular expression element (against the submission)
-        int[][] indices = getMatchingIndices( regexes, outputStr );
+        int[][] indices = ( transcript != null ) ? transcript.getMatchingIndices( rubric, transcriptSegments, outputStr ) : rubric.getMatchingIndices( outputStr );
+        if( DEBUG && rubric.getResultCache() != null ){
+            DEBUG( "Result cache: " + rubric.getResultCache().getHits() + " hits, " + rubric.getResultCache().getMisses() + " misses" );
+        }
+        try{
+            if( format == MatchResultWriter.Format.JSON ){
+                Writer jsonWriter = new BufferedWriter( new OutputStreamWriter( System.out, StandardCharsets.UTF_8 ) );
+                MatchResultWriter.writeJson( jsonWriter, regexes, indices, answerKeyMatches, outputStr );
+                jsonWriter.write( System.getProperty("line.separator") );
+                jsonWriter.flush();
+            }else if( format == MatchResultWriter.Format.BINARY ){
+                MatchResultWriter.writeBinary( new BufferedOutputStream( System.out ), regexes, indices, answerKeyMatches );
+            }else{
+                writeFeedback( System.out, rubric, answerKeyMatches, outputStr, indices );
+                System.out.println();
+            }
+        }catch( IOException e ){
+            e.printStackTrace();
+            System.exit(1);
+        }
+        writeStatistics( statistics, statsFilename );
+    }
 
-        /*
-         * Display the annotated output (with flanking "***"s and capitalized matches)
-         */
-        String output = getAnnotatedView( regexes, outputStr, indices, answerKeyMatches );
-        output = output.replace("\\", "\\\\");  // codePost does not display output if it has an unescaped \ in it :(
-        System.out.println( output );
+    /**
+     * Grades all of the test cases in a manifest and writes the combined report to stdout (see ManifestGrader)
+     * @param manifestFilename Filename of the manifest
+     * @param args Command-line arguments
+     */
+    private static void gradeManifest( String manifestFilename, String[] args ){
+        ManifestGrader grader = null;
+        MatchResultWriter.Format format = null;
+        try{
+            String threadsStr = getArgTrailer( "--threads", args );
+            int threads = Runtime.getRuntime().availableProcessors();
+            if( threadsStr != null ){
+                threads = Integer.parseInt( threadsStr );
+            }
+            format = getFormat( args );
+            ManifestGrader.TestCase[] testCases = ManifestGrader.readManifest( manifestFilename, args );
+            if( testCases.length == 0 ){
+                throw new IllegalArgumentException("No test cases found in manifest " + manifestFilename );
+            }
+            grader = new ManifestGrader( testCases, threads, getMaxOutputBytes( args ), format );
+        }catch( IllegalArgumentException e ){
+            System.err.println("ERROR: " + e.getMessage() );
+            System.exit(1);
+        }
+
+        ManifestGrader.Result[] results = grader.grade();
+        try{
+            Writer reportWriter = ( format == MatchResultWriter.Format.JSON ) ? new BufferedWriter( new OutputStreamWriter( System.out, StandardCharsets.UTF_8 ) )
+                                                                             : new BufferedWriter( new OutputStreamWriter( System.out ) );
+            grader.writeReport( reportWriter, results );
+            reportWriter.flush();
+        }catch( IOException e ){
+            e.printStackTrace();
+            System.exit(1);
+        }
+        for( ManifestGrader.Result result : results ){
+            if( result.numMatches < 0 ){
+                System.exit(1);
+            }
+        }
+    }
+
+    /**
+     * Writes the statistics (if any) to statsFilename
+     * @param statistics Statistics collected while grading (or null if they were not)
+     * @param statsFilename Name of the file to write them to (see MatchStatistics.write())
+     */
+    private static void writeStatistics( MatchStatistics statistics, String statsFilename ){
+        if( statistics == null ){
+            return;
+        }
+        try{
+            statistics.write( statsFilename );
+        }catch( IOException e ){
+            System.err.println("REFINED FEEDBACK ERROR: Unable to write statistics to " + statsFilename + ": " + e.getMessage() );
+        }
     }
 }
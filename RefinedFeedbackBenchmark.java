@@ -0,0 +1,230 @@
+/**
+ * Benchmarks for RefinedFeedback's hot paths: matching (with each engine), finding the answer key's matches, reading the explanations and outputs and rendering the annotated view.
+ * Uses the Project 4 fixtures (answerKey-cpsc1302-project4.txt, exampleOutput-cpsc1302-project4.txt and regexes-cpsc1302-project4.txt) and synthetic outputs from 1 KB to 100 MB:
+ *   all-match:   the example output repeated (every regex matches)
+ *   all-miss:    lines that none of the regexes match (each regex is searched for through the whole output)
+ *   adversarial: regexes that backtrack heavily on long words (searched for with a time limit)
+ * Each benchmark is run until it has warmed up (so that the JIT compiler has compiled it), then run repeatedly and the average time per operation and throughput are printed.
+ *
+ * Usage: java -Xmx2g RefinedFeedbackBenchmark [--max-size <bytes>] [--warmup <milliseconds>] [--measure <milliseconds>] [<benchmark name filter>]
+ * (run from the directory with the Project 4 fixtures)
+ * @author Hyrum D. Carroll
+ * @version 1.0, (Oct 17, 2026)
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+public class RefinedFeedbackBenchmark{
+
+    private final static String ANSWER_KEY_FILENAME = "answerKey-cpsc1302-project4.txt";
+    private final static String EXAMPLE_OUTPUT_FILENAME = "exampleOutput-cpsc1302-project4.txt";
+    private final static String REGEXES_FILENAME = "regexes-cpsc1302-project4.txt";
+
+    private final static long[] SIZES = { 1000L, 100000L, 10000000L, 100000000L }; // number of characters of each synthetic output
+    private final static String MISS_LINE = "Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor.\n"; // none of the Project 4 regexes match this
+    private final static String ADVERSARIAL_LINE = "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa\n";
+    private final static String[] ADVERSARIAL_REGEXES = { "(a|aa)+b", "(a+ ?)+!", "a.*a.*a.*b", "(.*a){6}x", "aaab" };
+    private final static long ADVERSARIAL_REGEX_TIMEOUT_MS = 200;
+
+    private static long warmupMillis = 1000;
+    private static long measureMillis = 2000;
+    private static String filter = null;  // only run benchmarks whose name contains this (if not null)
+    private static volatile int sink;     // results are "consumed" by this so that the JIT compiler can not skip the work
+
+    /**
+     * One operation to be timed
+     */
+    private interface Benchmark{
+        Object run() throws Exception;
+    }
+
+    /**
+     * Discards everything written to it (for rendering without keeping the output)
+     */
+    private static class NullWriter extends Writer{
+        public void write( char[] cbuf, int off, int len ){
+            sink += len;
+        }
+        public void flush(){}
+        public void close(){}
+    }
+
+    private static void consume( Object result ){
+        sink ^= System.identityHashCode( result );
+    }
+
+    /**
+     * Times benchmark (after warming it up) and prints the results
+     * @param name Name of the benchmark
+     * @param chars Number of characters processed by each operation (for the throughput)
+     * @param benchmark Operation to time
+     */
+    private static void measure( String name, long chars, Benchmark benchmark ) throws Exception{
+        if( filter != null && ! name.contains( filter ) ){
+            return;
+        }
+        long warmupEnd = System.nanoTime() + warmupMillis * 1000000L;
+        do{
+            consume( benchmark.run() );
+        }while( System.nanoTime() < warmupEnd );
+
+        long ops = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do{
+            consume( benchmark.run() );
+            ++ops;
+            elapsed = System.nanoTime() - start;
+        }while( elapsed < measureMillis * 1000000L );
+
+        double microsPerOp = elapsed / 1000.0 / ops;
+        double megabytesPerSecond = ( chars * (double) ops ) / ( elapsed / 1e9 ) / 1e6;
+        System.out.printf( "%-52s %12d %10d %16.1f %12.1f%n", name, chars, ops, microsPerOp, megabytesPerSecond );
+    }
+
+    /**
+     * Repeats unit until there are (at least) size characters
+     */
+    private static String synthesize( String unit, long size ){
+        StringBuilder text = new StringBuilder( (int) size + unit.length() );
+        while( text.length() < size ){
+            text.append( unit );
+        }
+        return text.toString();
+    }
+
+    private static File writeTempFile( String text ) throws IOException{
+        File file = File.createTempFile( "RefinedFeedbackBenchmark", ".txt" );
+        file.deleteOnExit();
+        OutputStream out = new FileOutputStream( file );
+        try{
+            out.write( text.getBytes( Charset.defaultCharset() ) );
+        }finally{
+            out.close();
+        }
+        return file;
+    }
+
+    /**
+     * Benchmarks with the Project 4 fixtures themselves
+     */
+    private static void benchmarkFixtures( final String[] regexes, final String answerKey, final String exampleOutput ) throws Exception{
+        final String[] answerKeyMatches = RefinedFeedback.getAnswerKeyMatches( regexes, answerKey );
+        final Rubric rubric = new Rubric( regexes );
+
+        // one explanation for every other regex
+        StringBuilder explanations = new StringBuilder();
+        for( int regexI = 0; regexI < regexes.length; ++regexI){
+            explanations.append( regexI % 2 == 0 ? "The explanation for item " + regexI : "" ).append( "\n" );
+        }
+        final String explanationsFilename = writeTempFile( explanations.toString() ).getPath();
+
+        measure( "fixture/compile", 0, new Benchmark(){ public Object run(){
+            return new Rubric( regexes ); }} );
+        measure( "fixture/getMatchingIndices(static)", exampleOutput.length(), new Benchmark(){ public Object run(){
+            return RefinedFeedback.getMatchingIndices( regexes, exampleOutput ); }} );
+        for( final Rubric.Engine engine : Rubric.Engine.values() ){
+            final Rubric engineRubric = rubric.withEngine( engine );
+            measure( "fixture/getMatchingIndices/" + engine.name().toLowerCase(), exampleOutput.length(), new Benchmark(){ public Object run(){
+                return engineRubric.getMatchingIndices( exampleOutput ); }} );
+        }
+        measure( "fixture/getAnswerKeyMatches", answerKey.length(), new Benchmark(){ public Object run(){
+            return RefinedFeedback.getAnswerKeyMatches( regexes, answerKey ); }} );
+        measure( "fixture/updateAnswerKeyMatches", explanations.length(), new Benchmark(){ public Object run(){
+            String[] matches = answerKeyMatches.clone();
+            RefinedFeedback.updateAnswerKeyMatches( matches, explanationsFilename );
+            return matches; }} );
+        measure( "fixture/getAllInput(Reader)", answerKey.length(), new Benchmark(){ public Object run(){
+            return RefinedFeedback.getAllInput( new StringReader( answerKey ) ); }} );
+        measure( "fixture/getAllInput(filename)", answerKey.length(), new Benchmark(){ public Object run(){
+            return RefinedFeedback.getAllInput( ANSWER_KEY_FILENAME ); }} );
+        final int[][] indices = rubric.getMatchingIndices( exampleOutput );
+        measure( "fixture/getAnnotatedView", exampleOutput.length(), new Benchmark(){ public Object run(){
+            return RefinedFeedback.getAnnotatedView( regexes, exampleOutput, indices, answerKeyMatches ); }} );
+        measure( "fixture/getFeedback", exampleOutput.length(), new Benchmark(){ public Object run(){
+            return RefinedFeedback.getFeedback( rubric, answerKeyMatches, exampleOutput ); }} );
+    }
+
+    /**
+     * Benchmarks with a synthetic output
+     * @param variant Name of the kind of output (e.g., all-match)
+     * @param rubric Regexes to search for
+     * @param answerKeyMatches Matches for the regexes from the answer key
+     * @param text Synthetic output
+     */
+    private static void benchmarkSynthetic( String variant, final Rubric rubric, final String[] answerKeyMatches, final String text ) throws Exception{
+        String prefix = variant + "/" + text.length() + "/";
+        for( final Rubric.Engine engine : Rubric.Engine.values() ){
+            final Rubric engineRubric = rubric.withEngine( engine );
+            measure( prefix + "getMatchingIndices/" + engine.name().toLowerCase(), text.length(), new Benchmark(){ public Object run(){
+                return engineRubric.getMatchingIndices( text ); }} );
+        }
+
+        final String[] regexes = rubric.getRegexes();
+        final int[][] indices = rubric.getMatchingIndices( text );
+        measure( prefix + "getAnnotatedView", text.length(), new Benchmark(){ public Object run(){
+            return RefinedFeedback.getAnnotatedView( regexes, text, indices, answerKeyMatches ); }} );
+        measure( prefix + "writeFeedback", text.length(), new Benchmark(){ public Object run() throws IOException{
+            RefinedFeedback.writeFeedback( new NullWriter(), rubric, answerKeyMatches, text, indices );
+            return indices; }} );
+
+        final byte[] bytes = text.getBytes( Charset.defaultCharset() );
+        final File file = writeTempFile( text );
+        measure( prefix + "BoundedInput.read(stream)", text.length(), new Benchmark(){ public Object run() throws IOException{
+            return BoundedInput.read( new ByteArrayInputStream( bytes ), BoundedInput.DEFAULT_MAX_BYTES ); }} );
+        measure( prefix + "BoundedInput.read(file)", text.length(), new Benchmark(){ public Object run() throws IOException{
+            return BoundedInput.read( file, BoundedInput.DEFAULT_MAX_BYTES ); }} );
+        final CharSequence fileText = BoundedInput.read( file, BoundedInput.DEFAULT_MAX_BYTES ); // (US-ASCII outputs are not decoded)
+        measure( prefix + "getMatchingIndices(file)", fileText.length(), new Benchmark(){ public Object run(){
+            return rubric.getMatchingIndices( fileText ); }} );
+        file.delete();
+    }
+
+    public static void main( String[] args ) throws Exception{
+        long maxSize = SIZES[ SIZES.length - 1 ];
+        for( int i = 0; i < args.length; ++i){
+            if( args[i].equals("--max-size") && i + 1 < args.length ){
+                maxSize = Long.parseLong( args[++i] );
+            }else if( args[i].equals("--warmup") && i + 1 < args.length ){
+                warmupMillis = Long.parseLong( args[++i] );
+            }else if( args[i].equals("--measure") && i + 1 < args.length ){
+                measureMillis = Long.parseLong( args[++i] );
+            }else if( args[i].startsWith("--") ){
+                System.err.println("Usage: java -Xmx2g RefinedFeedbackBenchmark [--max-size <bytes>] [--warmup <milliseconds>] [--measure <milliseconds>] [<benchmark name filter>]");
+                System.exit(1);
+            }else{
+                filter = args[i];
+            }
+        }
+
+        String answerKey = RefinedFeedback.getAllInput( ANSWER_KEY_FILENAME );
+        String exampleOutput = RefinedFeedback.getAllInput( EXAMPLE_OUTPUT_FILENAME );
+        if( answerKey == null || exampleOutput == null ){
+            System.err.println("ERROR: Run from the directory with " + ANSWER_KEY_FILENAME + " and " + EXAMPLE_OUTPUT_FILENAME );
+            System.exit(1);
+        }
+        String[] regexes = RefinedFeedback.readRegexesFile( REGEXES_FILENAME );
+        String[] answerKeyMatches = RefinedFeedback.getAnswerKeyMatches( regexes, answerKey );
+        Rubric rubric = new Rubric( regexes );
+        Rubric adversarialRubric = new Rubric( ADVERSARIAL_REGEXES ).withTimeouts( ADVERSARIAL_REGEX_TIMEOUT_MS, 0 );
+
+        System.out.printf( "%-52s %12s %10s %16s %12s%n", "Benchmark", "Characters", "Operations", "Microseconds/op", "MB/s" );
+        benchmarkFixtures( regexes, answerKey, exampleOutput );
+        for( long size : SIZES ){
+            if( size > maxSize ){
+                break;
+            }
+            benchmarkSynthetic( "all-match", rubric, answerKeyMatches, synthesize( exampleOutput, size ) );
+            benchmarkSynthetic( "all-miss", rubric, answerKeyMatches, synthesize( MISS_LINE, size ) );
+            benchmarkSynthetic( "adversarial", adversarialRubric, ADVERSARIAL_REGEXES, synthesize( ADVERSARIAL_LINE, size ) );
+        }
+        System.out.println( "Searches that timed out: " + Rubric.getTimeoutCount() );
+    }
+}
@@ -0,0 +1,159 @@
+/**
+ * Drop-in replacement for RefinedFeedback that has a RefinedFeedbackServer do the grading.
+ * Takes the same command-line arguments (and stdin) and displays the same output as RefinedFeedback.
+ * If the server can not be reached (or stays busy), the submission is graded in this process instead.
+ * The server's port can be set with the refinedfeedback.port system property (e.g., java -Drefinedfeedback.port=7453 RefinedFeedbackClient ...)
+ * and its token file with the refinedfeedback.tokenfile system property (see RefinedFeedbackServer; if it can not be read, the submission is graded in this process).
+ * @author Hyrum D. Carroll
+ * @version 1.0, (Oct 17, 2026)
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class RefinedFeedbackClient{
+
+    public final static int BUSY_RETRIES = 5;          // number of times to retry if the server is busy
+    public final static long BUSY_RETRY_DELAY_MS = 50; // doubles after each retry
+
+    /**
+     * Status and feedback (or error message) from the server
+     */
+    static class Response{
+        final int status;
+        final String message;
+
+        Response( int status, String message ){
+            this.status = status;
+            this.message = message;
+        }
+    }
+
+    /**
+     * Sends a request to the server
+     * @param port Port the server is listening on (on the loopback address)
+     * @param token Token from the server's token file
+     * @param args Command-line arguments (as they would be passed to RefinedFeedback)
+     * @param submission Output of a student's submission (its head and tail)
+     * @return The status and the feedback (or error message) from the server
+     */
+    static Response request( int port, byte[] token, String[] args, BoundedInput.Windows submission ) throws IOException{
+        Socket socket = new Socket( InetAddress.getLoopbackAddress(), port );
+        try{
+            DataOutputStream out = new DataOutputStream( new BufferedOutputStream( socket.getOutputStream() ) );
+            out.writeInt( RefinedFeedbackServer.MAGIC );
+            RefinedFeedbackServer.writeBytes( out, token );
+            out.writeInt( args.length );
+            for( String arg : args ){
+                RefinedFeedbackServer.writeBytes( out, arg.getBytes( StandardCharsets.UTF_8 ) );
+            }
+            writeBuffer( out, submission.head );
+            out.writeLong( submission.omittedBytes );
+            writeBuffer( out, submission.tail );
+            out.flush();
+
+            DataInputStream in = new DataInputStream( new BufferedInputStream( socket.getInputStream() ) );
+            int status = in.readInt();
+            String message = new String( RefinedFeedbackServer.readBytes( in ), StandardCharsets.UTF_8 );
+            return new Response( status, message );
+        }finally{
+            socket.close();
+        }
+    }
+
+    /**
+     * Writes the remaining bytes in buffer (prefixed with the number of bytes)
+     */
+    private static void writeBuffer( DataOutputStream out, ByteBuffer buffer ) throws IOException{
+        out.writeInt( buffer.remaining() );
+        out.write( buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining() );
+    }
+
+    public static void main( String[] args ) throws IOException{
+        // validate the arguments just like RefinedFeedback does (and grade here for batches, watched directories, manifests, transcripts, statistics, rubric bundles, binary results and analyses, since the server does not)
+        int regexArgsStartIndex = RefinedFeedback.getRegexArgsStartIndex( args );
+        boolean hasRubric = RefinedFeedback.getArgTrailer( "--rubric", args ) != null;
+        if( ( regexArgsStartIndex >= args.length && ! hasRubric ) || RefinedFeedback.getArgTrailer( "--batch", args ) != null
+            || RefinedFeedback.getArgTrailer( "--stats", args ) != null || RefinedFeedback.getArgTrailer( "--compile-rubric", args ) != null
+            || RefinedFeedback.getArgTrailer( "--analyze", args ) != null || RefinedFeedback.getArgTrailer( "--manifest", args ) != null
+            || RefinedFeedback.getArgTrailer( "--watch", args ) != null || RefinedFeedback.getArgTrailer( "--match-table", args ) != null
+            || RefinedFeedback.getArgTrailer( "--stdin", args ) != null
+            || "binary".equalsIgnoreCase( RefinedFeedback.getArgTrailer( "--format", args ) ) ){
+            RefinedFeedback.main( args );
+            return;
+        }
+
+        // the server may have a different working directory, so send absolute paths
+        String[] serverArgs = args.clone();
+        for( int argIndex = 0; argIndex + 1 < regexArgsStartIndex; ++argIndex){
+            if( Arrays.asList( RefinedFeedback.OPTIONS_WITH_PATHS ).contains( serverArgs[argIndex] ) ){
+                ++argIndex;
+                serverArgs[argIndex] = new File( serverArgs[argIndex] ).getAbsolutePath();
+            }
+        }
+
+        long maxOutputBytes = 0;
+        try{
+            maxOutputBytes = RefinedFeedback.getMaxOutputBytes( args );
+        }catch( IllegalArgumentException e ){
+            System.err.println("ERROR: " + e.getMessage() );
+            System.exit(1);
+        }
+        BoundedInput.Windows submission = BoundedInput.readWindows( System.in, maxOutputBytes );
+        int port = Integer.getInteger( "refinedfeedback.port", RefinedFeedbackServer.DEFAULT_PORT );
+        String tokenFilename = System.getProperty( "refinedfeedback.tokenfile" );
+        File tokenFile = ( tokenFilename != null ) ? new File( tokenFilename ) : RefinedFeedbackServer.getDefaultTokenFile( port );
+        byte[] token = null;
+        try{
+            token = RefinedFeedbackServer.readToken( tokenFile );
+        }catch( IOException e ){
+            RefinedFeedback.DEBUG( "Unable to read the server's token file " + tokenFile + " (" + e.getMessage() + "), so grading locally" );
+        }
+        long delay = BUSY_RETRY_DELAY_MS;
+        for( int attempt = 0; token != null && attempt <= BUSY_RETRIES; ++attempt ){
+            Response response;
+            try{
+                response = request( port, token, serverArgs, submission );
+            }catch( IOException e ){
+                RefinedFeedback.DEBUG( "Unable to reach the server (" + e.getMessage() + "), so grading locally" );
+                break;
+            }
+            if( response.status == RefinedFeedbackServer.STATUS_OK ){
+                if( "json".equalsIgnoreCase( RefinedFeedback.getArgTrailer( "--format", args ) ) ){
+                    // JSON is always UTF-8 (just like RefinedFeedback writes it)
+                    Writer jsonWriter = new OutputStreamWriter( System.out, StandardCharsets.UTF_8 );
+                    jsonWriter.write( response.message + System.getProperty("line.separator") );
+                    jsonWriter.flush();
+                }else{
+                    System.out.println( response.message );
+                }
+                return;
+            }else if( response.status == RefinedFeedbackServer.STATUS_ERROR ){
+                System.err.println("ERROR: " + response.message );
+                System.exit(1);
+            }
+            // busy, so wait and try again
+            try{
+                Thread.sleep( delay );
+            }catch( InterruptedException e ){
+                Thread.currentThread().interrupt();
+                break;
+            }
+            delay *= 2;
+        }
+
+        // grade it here instead
+        RefinedFeedback.run( args, BoundedInput.decode( submission ) );
+    }
+}
@@ -0,0 +1,441 @@
+/**
+ * Long-running grading server (listening on localhost) so that each submission does not pay for starting a JVM and compiling the regexes.
+ * Compiled rubrics (and their answer key matches) are kept in memory between requests.
+ * Requests are handled by a fixed number of threads with a bounded queue; when the queue is full, requests are rejected with STATUS_BUSY.
+ * See RefinedFeedbackClient for a drop-in replacement for RefinedFeedback that sends its request to this server.
+ * Since a request can name any file for the server to read (e.g., --answer) or write (e.g., --cache), only clients that can read the
+ * server's token file are served: a random token is written to it (readable only by the user running the server) when the server starts,
+ * and each request must start with it.
+ *
+ * Protocol (all integers are big-endian, all strings are UTF-8 prefixed with their length in bytes):
+ *   Request:  MAGIC, the token (length-prefixed bytes), number of command-line arguments, each command-line argument, then the submission output as
+ *             the head bytes, number of bytes omitted (a long) and the tail bytes (see BoundedInput)
+ *   Response: status (STATUS_OK, STATUS_ERROR or STATUS_BUSY), then the feedback (or error message) as a string
+ * @author Hyrum D. Carroll
+ * @version 1.0, (Oct 17, 2026)
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+public class RefinedFeedbackServer{
+
+    protected final static String USAGE = "Usage:  [--port <port number (default: " + RefinedFeedbackServer.DEFAULT_PORT + ")>] [--threads <number of threads>] [--queue <maximum number of waiting requests>] [--token-file <filename to write the token for clients to (default: ~/.refinedfeedback-<port>.token)>]";
+
+    public final static int DEFAULT_PORT = 7453;
+    public final static int DEFAULT_QUEUE_SIZE = 256;
+    public final static int MAX_CACHED_RUBRICS = 128;
+
+    public final static int MAGIC = 0x52464232; // "RFB2"
+    public final static int TOKEN_BYTES = 32;   // number of random bytes in a token (written as hexadecimal digits)
+    public final static int STATUS_OK = 0;
+    public final static int STATUS_ERROR = 1;
+    public final static int STATUS_BUSY = 2;
+
+    public final static int READ_TIMEOUT_MILLIS = 30000; // a client that sends nothing for this long is disconnected (so that it does not hold a thread)
+
+    public final static int MAX_ARGS = 100000;
+    public final static int MAX_STRING_BYTES = 1 << 30;
+
+    /**
+     * Compiled regexes and the strings to display for them (if they are missing)
+     */
+    private static class CachedRubric{
+        final Rubric rubric;
+        final String[] answerKeyMatches;
+        final RubricBundle bundle; // null if it was not loaded from a bundle
+
+        CachedRubric( Rubric rubric, String[] answerKeyMatches, RubricBundle bundle ){
+            this.rubric = rubric;
+            this.answerKeyMatches = answerKeyMatches;
+            this.bundle = bundle;
+        }
+    }
+
+    // least-recently used rubrics are removed first (access is synchronized on the map)
+    private final Map<String, CachedRubric> rubrics = new LinkedHashMap<String, CachedRubric>( 16, 0.75f, true ){
+        protected boolean removeEldestEntry( Map.Entry<String, CachedRubric> eldest ){
+            return size() > MAX_CACHED_RUBRICS;
+        }
+    };
+
+    private final int port;
+    private final ThreadPoolExecutor pool;
+    private final File tokenFile;
+    private byte[] token; // (written once serve() is listening)
+
+    /**
+     * @param port Port to listen on (on the loopback address)
+     * @param threads Number of requests to grade at the same time
+     * @param queueSize Maximum number of requests waiting to be graded
+     */
+    public RefinedFeedbackServer( int port, int threads, int queueSize ){
+        this( port, threads, queueSize, getDefaultTokenFile( port ) );
+    }
+
+    /**
+     * @param port Port to listen on (on the loopback address)
+     * @param threads Number of requests to grade at the same time
+     * @param queueSize Maximum number of requests waiting to be graded
+     * @param tokenFile File to write the token to (that clients must send with each request)
+     */
+    public RefinedFeedbackServer( int port, int threads, int queueSize, File tokenFile ){
+        this.port = port;
+        this.pool = new ThreadPoolExecutor( threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>( queueSize ) );
+        this.tokenFile = tokenFile;
+    }
+
+    /**
+     * @param port Port the server listens on
+     * @return The token file that the server writes (and the client reads) by default
+     */
+    public static File getDefaultTokenFile( int port ){
+        return new File( System.getProperty("user.home"), ".refinedfeedback-" + port + ".token" );
+    }
+
+    /**
+     * Writes a new random token to tokenFile (as hexadecimal digits), which is created so that only its owner can read it
+     * @return The token (as it is written to the file)
+     */
+    static byte[] writeToken( File tokenFile ) throws IOException{
+        byte[] random = new byte[ TOKEN_BYTES ];
+        new SecureRandom().nextBytes( random );
+        StringBuilder hex = new StringBuilder();
+        for( byte b : random ){
+            hex.append( String.format( "%02x", b ) );
+        }
+        byte[] token = hex.toString().getBytes( StandardCharsets.US_ASCII );
+
+        Path path = tokenFile.toPath();
+        Files.deleteIfExists( path ); // (so that it is created below, with only the owner's permissions)
+        if( path.getFileSystem().supportedFileAttributeViews().contains("posix") ){
+            Files.createFile( path, PosixFilePermissions.asFileAttribute( PosixFilePermissions.fromString("rw-------") ) );
+        }else{
+            Files.createFile( path );
+            tokenFile.setReadable( false, false );
+            tokenFile.setWritable( false, false );
+            tokenFile.setReadable( true, true );
+            tokenFile.setWritable( true, true );
+        }
+        Files.write( path, token );
+        return token;
+    }
+
+    /**
+     * @param tokenFile File written by a server (see writeToken())
+     * @return The token in it (without any surrounding whitespace)
+     */
+    static byte[] readToken( File tokenFile ) throws IOException{
+        return new String( Files.readAllBytes( tokenFile.toPath() ), StandardCharsets.US_ASCII ).trim().getBytes( StandardCharsets.US_ASCII );
+    }
+
+    /**
+     * Accepts connections until the process is stopped
+     */
+    public void serve() throws IOException{
+        ServerSocket serverSocket = new ServerSocket( port, 0, InetAddress.getLoopbackAddress() );
+        try{
+            token = writeToken( tokenFile );
+        }catch( IOException e ){
+            serverSocket.close();
+            throw new IOException( "Unable to write token file " + tokenFile + ": " + e.getMessage(), e );
+        }
+        tokenFile.deleteOnExit();
+        System.err.println("RefinedFeedbackServer listening on " + serverSocket.getLocalSocketAddress() + " (token in " + tokenFile + ")" );
+        try{
+            while( true ){
+                final Socket socket = serverSocket.accept();
+                try{
+                    pool.execute( new Runnable(){
+                            public void run(){
+                                handle( socket );
+                            }
+                        });
+                }catch( RejectedExecutionException e ){
+                    // too many waiting requests, so let the client know right away
+                    try{
+                        DataOutputStream out = new DataOutputStream( socket.getOutputStream() );
+                        writeString( out, STATUS_BUSY, "Server is busy" );
+                        out.flush();
+                    }catch( IOException ignored ){
+                    }
+                    close( socket );
+                }
+            }
+        }finally{
+            serverSocket.close();
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Reads a request, grades it and writes the response
+     * @param socket Connection with the client
+     */
+    private void handle( Socket socket ){
+        try{
+            socket.setSoTimeout( READ_TIMEOUT_MILLIS ); // (a SocketTimeoutException is an IOException, so the socket is closed below)
+            DataInputStream in = new DataInputStream( new BufferedInputStream( socket.getInputStream() ) );
+            DataOutputStream out = new DataOutputStream( new BufferedOutputStream( socket.getOutputStream() ) );
+            int status = STATUS_OK;
+            String response;
+            try{
+                if( in.readInt() != MAGIC ){
+                    throw new IllegalArgumentException("Unrecognized request");
+                }
+                if( ! MessageDigest.isEqual( readBytes( in, TOKEN_BYTES * 2 ), token ) ){
+                    throw new IllegalArgumentException("Invalid token (it must match the server's token file, " + tokenFile + ")");
+                }
+                int argc = in.readInt();
+                if( argc < 0 || argc > MAX_ARGS ){
+                    throw new IllegalArgumentException("Invalid number of arguments (" + argc + ")");
+                }
+                String[] args = new String[ argc ];
+                for( int i = 0; i < argc; ++i){
+                    args[i] = new String( readBytes( in ), StandardCharsets.UTF_8 );
+                }
+                ByteBuffer head = ByteBuffer.wrap( readBytes( in ) );
+                long omittedBytes = in.readLong();
+                ByteBuffer tail = ByteBuffer.wrap( readBytes( in ) );
+                response = grade( args, BoundedInput.decode( head, tail, omittedBytes ) );
+            }catch( RuntimeException e ){
+                status = STATUS_ERROR;
+                response = String.valueOf( e.getMessage() );
+            }
+            writeString( out, status, response );
+            out.flush();
+        }catch( IOException e ){
+            RefinedFeedback.DEBUG( "Request failed: " + e );
+        }finally{
+            close( socket );
+        }
+    }
+
+    /**
+     * Grades a submission
+     * @param args Command-line arguments (as they would be passed to RefinedFeedback)
+     * @param outputStr Output of a student's submission
+     * @return The feedback (exactly as RefinedFeedback would display it)
+     */
+    public String grade( String[] args, CharSequence outputStr ){
+        CachedRubric cached = getRubric( args );
+        if( RefinedFeedback.getFormat( args ) == MatchResultWriter.Format.JSON ){
+            StringBuilder json = new StringBuilder();
+            try{
+                MatchResultWriter.writeJson( json, cached.rubric.getRegexes(), cached.rubric.getMatchingIndices( outputStr ), cached.answerKeyMatches, outputStr );
+            }catch( IOException e ){
+                throw new IllegalStateException( e ); // not possible for a StringBuilder
+            }
+            return json.toString();
+        }
+        return RefinedFeedback.getFeedback( cached.rubric, cached.answerKeyMatches, outputStr );
+    }
+
+    /**
+     * Finds the compiled rubric for the command-line arguments (compiling it if it is not cached)
+     * @param args Command-line arguments (as they would be passed to RefinedFeedback)
+     * @return Compiled regexes and the answer key matches
+     */
+    private CachedRubric getRubric( String[] args ){
+        for( String option : RefinedFeedback.OPTIONS_WITH_TRAILERS ){
+            getArgTrailer( option, args ); // make sure that each option has its value
+        }
+        if( getArgTrailer( "--batch", args ) != null ){
+            throw new IllegalArgumentException("--batch is not supported by the server");
+        }
+        if( getArgTrailer( "--stats", args ) != null ){
+            throw new IllegalArgumentException("--stats is not supported by the server");
+        }
+        if( RefinedFeedback.getFormat( args ) == MatchResultWriter.Format.BINARY ){
+            throw new IllegalArgumentException("--format binary is not supported by the server");
+        }
+        if( getArgTrailer( "--compile-rubric", args ) != null ){
+            throw new IllegalArgumentException("--compile-rubric is not supported by the server");
+        }
+        if( getArgTrailer( "--analyze", args ) != null ){
+            throw new IllegalArgumentException("--analyze is not supported by the server");
+        }
+        if( getArgTrailer( "--manifest", args ) != null ){
+            throw new IllegalArgumentException("--manifest is not supported by the server");
+        }
+        if( getArgTrailer( "--watch", args ) != null ){
+            throw new IllegalArgumentException("--watch is not supported by the server");
+        }
+        if( getArgTrailer( "--match-table", args ) != null ){
+            throw new IllegalArgumentException("--match-table is not supported by the server");
+        }
+        if( getArgTrailer( "--stdin", args ) != null ){
+            throw new IllegalArgumentException("--stdin is not supported by the server");
+        }
+        String answerKeyFilename = getArgTrailer( "--answer", args );
+        String explanationsFilename = getArgTrailer( "--explanations", args );
+        String rubricFilename = getArgTrailer( "--rubric", args );
+        int regexArgsStartIndex = RefinedFeedback.getRegexArgsStartIndex( args );
+        if( rubricFilename != null ){
+            if( regexArgsStartIndex < args.length || answerKeyFilename != null || explanationsFilename != null ){
+                throw new IllegalArgumentException("--rubric can not be used with --answer, --explanations or regexes");
+            }
+        }else if( regexArgsStartIndex >= args.length ){
+            throw new IllegalArgumentException("No regexes found from command-line arguments!\n\n" + RefinedFeedback.USAGE );
+        }
+
+        // the key includes when the answer key and explanations were modified so that changes to them are picked up
+        StringBuilder key = new StringBuilder();
+        for( String arg : args ){
+            key.append( arg ).append( '\0' );
+        }
+        for( String filename : new String[]{ answerKeyFilename, explanationsFilename, rubricFilename } ){
+            if( filename != null ){
+                File file = new File( filename );
+                key.append( file.lastModified() ).append( '\0' ).append( file.length() ).append( '\0' );
+            }
+        }
+        String rubricKey = key.toString();
+
+        CachedRubric cached;
+        synchronized( rubrics ){
+            cached = rubrics.get( rubricKey );
+        }
+        if( cached != null && cached.bundle != null && cached.bundle.isStale() ){
+            cached = null; // the bundle's answer key or explanations changed
+        }
+        if( cached == null ){
+            if( rubricFilename != null ){
+                RubricBundle bundle;
+                try{
+                    bundle = RubricBundle.load( rubricFilename );
+                }catch( IOException e ){
+                    throw new IllegalArgumentException( "Unable to read rubric bundle " + rubricFilename + ": " + e.getMessage() );
+                }
+                String[] regexes = bundle.getRegexes();
+                String[] lintedRegexes = RefinedFeedback.lintRegexes( regexes, bundle.getFlags(), args );
+                Rubric rubric = ( lintedRegexes != regexes ) ? new Rubric( lintedRegexes, bundle.getFlags() ) : bundle.toRubric();
+                cached = new CachedRubric( RefinedFeedback.applyOptions( rubric, args ), bundle.getAnswerKeyMatches(), bundle );
+            }else{
+                String[] regexes = Arrays.copyOfRange( args, regexArgsStartIndex, args.length );
+                regexes = RefinedFeedback.lintRegexes( regexes, RefinedFeedback.DEFAULT_REGEX_FLAGS, args );
+                String[] answerKeyMatches = RefinedFeedback.loadAnswerKeyMatches( regexes, answerKeyFilename, explanationsFilename );
+                cached = new CachedRubric( RefinedFeedback.newRubric( regexes, args ), answerKeyMatches, null );
+            }
+            synchronized( rubrics ){
+                rubrics.put( rubricKey, cached );
+            }
+        }
+        return cached;
+    }
+
+    /**
+     * Same as RefinedFeedback.getArgTrailer(), but without exiting if the trailer is missing
+     */
+    private static String getArgTrailer( String arg, String[] args ){
+        for( int argIndex = 0; argIndex < args.length; ++argIndex){
+            if( args[argIndex].equals( arg ) ){
+                if( argIndex + 1 >= args.length ){
+                    throw new IllegalArgumentException("Missing required portion following " + arg );
+                }
+                return args[argIndex + 1];
+            }
+        }
+        return null; // not found
+    }
+
+    /**
+     * Reads a length-prefixed array of bytes
+     */
+    static byte[] readBytes( DataInputStream in ) throws IOException{
+        return readBytes( in, MAX_STRING_BYTES );
+    }
+
+    /**
+     * Reads a length-prefixed array of bytes of at most maxLength bytes
+     */
+    static byte[] readBytes( DataInputStream in, int maxLength ) throws IOException{
+        int length = in.readInt();
+        if( length < 0 || length > maxLength ){
+            throw new IllegalArgumentException("Invalid length (" + length + ")");
+        }
+        byte[] bytes = new byte[ length ];
+        in.readFully( bytes );
+        return bytes;
+    }
+
+    /**
+     * Writes a length-prefixed array of bytes
+     */
+    static void writeBytes( DataOutputStream out, byte[] bytes ) throws IOException{
+        out.writeInt( bytes.length );
+        out.write( bytes );
+    }
+
+    /**
+     * Writes a status followed by a length-prefixed UTF-8 string
+     */
+    private static void writeString( DataOutputStream out, int status, String str ) throws IOException{
+        out.writeInt( status );
+        writeBytes( out, str.getBytes( StandardCharsets.UTF_8 ) );
+    }
+
+    private static void close( Socket socket ){
+        try{
+            socket.close();
+        }catch( IOException ignored ){
+        }
+    }
+
+    public static void main( String[] args ){
+        int port = DEFAULT_PORT;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int queueSize = DEFAULT_QUEUE_SIZE;
+        File tokenFile = null;
+        try{
+            String portStr = RefinedFeedback.getArgTrailer( "--port", args );
+            if( portStr != null ){
+                port = Integer.parseInt( portStr );
+            }
+            String threadsStr = RefinedFeedback.getArgTrailer( "--threads", args );
+            if( threadsStr != null ){
+                threads = Integer.parseInt( threadsStr );
+            }
+            String queueStr = RefinedFeedback.getArgTrailer( "--queue", args );
+            if( queueStr != null ){
+                queueSize = Integer.parseInt( queueStr );
+            }
+            String tokenFilename = RefinedFeedback.getArgTrailer( "--token-file", args );
+            if( tokenFilename != null ){
+                tokenFile = new File( tokenFilename );
+            }
+        }catch( NumberFormatException e ){
+            System.err.println("ERROR: " + e.getMessage() );
+            System.err.println("\n" + USAGE + "\n");
+            System.exit(1);
+        }
+
+        try{
+            new RefinedFeedbackServer( port, threads, queueSize, ( tokenFile != null ) ? tokenFile : getDefaultTokenFile( port ) ).serve();
+        }catch( IOException e ){
+            System.err.println("REFINED FEEDBACK ERROR: " + e.getMessage() );
+            System.exit(1);
+        }
+    }
+}
@@ -3,7 +3,17 @@
  * @author Hyrum D. Carroll
  * @version 0.2 (Apr 9, 2024)
  */
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class RefinedFeedbackTest{
 
@@ -53,6 +63,36 @@ public class RefinedFeedbackTest{
     }
         
 
+    // Same as testCheckingAccount2, but finding the most regexes that can be matched in order (see testCheckingAccount2.txt)
+    public static void testCheckingAccount2Aligned(){
+        String[] regexes = {"account manager", "Checking", "balance", "checking123", "690\\.68", "(check|number)", "\\b2124\\b", "Savings", "balance", "savings124", "\\b1,?122.00\\b", "APR", "\\b1\\.0\\b", "Thank"};
+
+        String submission = "Welcome to my manager of accounts!\n" +
+            "Checking Account:\n" +
+            "Balance for account checking123: $0.0\n" +
+            "Last processed check number:2124\n" +
+            "Savings Account: \n" +
+            "Balance for account savings124: $0.0\n" +
+            "APR: 0.01%\n" +
+            "Balance for account checking123: $801.02\n" +
+            "Exiting the Account Manager\n" + 
+            "Thank-you";
+
+        String[] matches = {"account manager", "Checking", "Balance", "checking123", "690.68", "check", "2124", "Savings", "Balance", "savings124", "1,122.00", "APR", "1.0", "Thank"};
+
+        int[][] indices = new Rubric( regexes ).withEngine( Rubric.Engine.ALIGN ).getMatchingIndices( submission );
+        System.out.println( "DEBUGGING: Indices: " + Arrays.deepToString( indices ) );
+        System.out.println( RefinedFeedback.getAnnotatedView( regexes, submission, indices, matches ) );
+    }
+
+    // The candidates for "\\bb" are only where a word starts with b (i.e., not at the second b of "bb", just after the previous candidate),
+    // so only one of the regexes can be matched
+    public static void testAlignedWordBoundary(){
+        String[] regexes = {"b", "\\bb"};
+        int[][] indices = new Rubric( regexes ).withEngine( Rubric.Engine.ALIGN ).getMatchingIndices( "bb\n" );
+        System.out.println( "DEBUGGING: Aligned indices: " + Arrays.deepToString( indices ) );
+    }
+
     public static void testVideoGameChar(){
 
 
@@ -142,9 +182,330 @@ public class RefinedFeedbackTest{
         test( regexes, submission, regexes );
     }
     
+    // The same (precompiled) Rubric graded against multiple submissions
+    public static void testReusedRubric(){
+        String[] regexes = {"life", "universe", "42"};
+        Rubric rubric = new Rubric( regexes );
+
+        String[] submissions = { "The answer to life,\nthe universe\nand everything is 42.\nNext question please.\n",
+                                 "The answer to life,\nthe solar sytem\nand everything is 42.\nNext question please.\n",
+                                 "The answer to LIFE,\nthe UNIVERSE\nand everything is forty-two.\nNext question please.\n" };
+        for( String submission : submissions ){
+            int[][] indices = rubric.getMatchingIndices( submission );
+            System.out.println( "DEBUGGING: Indices: " + Arrays.deepToString( indices ) );
+            System.out.println( RefinedFeedback.getAnnotatedView( regexes, submission, indices, regexes ) );
+        }
+    }
+
+    /**
+     * The annotated view as it was built before AnnotatedViewWriter (with a substring, toUpperCase() and replace() for each part), to compare it with
+     */
+    public static String getAnnotatedViewWithStrings( String[] regexes, CharSequence text, int[][] indices, String[] answerKeyMatches ){
+        StringBuilder output = new StringBuilder();
+        int numMatches = RefinedFeedback.getNumMatches( indices );
+        if( numMatches == indices.length ){
+            output.append( "\n" + RefinedFeedback.ALL_MATCHES_FOUND_MSG + "\n");
+        }
+        output.append("\nAnnotated Matches View (" + numMatches + " of " + indices.length + " matches found)\n");
+        output.append("(Matches are uppercased and indicated with *** before and after the match)\n");
+        output.append("(Terms that are missing are identified with '<<< Missing: [the missing item] >>>')\n");
+        output.append("==========================================================================\n");
+
+        int textEndIndex = -1; // index of the last character in text that matched the last matching regex
+        StringBuilder missingStr = new StringBuilder(); // lines to be added to the output with missed matches
+        for(int regexI = 0; regexI < regexes.length; ++regexI){
+            int textStartIndex = indices[regexI][0];
+            if( textStartIndex < 0 ){
+                if( regexI != 0 ){
+                    missingStr.append("\n");
+                }
+                missingStr.append( "\n<<< " + RefinedFeedback.getMissingLabel( indices[regexI] ) + ": " + answerKeyMatches[regexI] + " >>>\n");
+                while( regexI + 1 < regexes.length && indices[regexI + 1][0] < 0){
+                    ++regexI;
+                    missingStr.append( "\n<<< " + RefinedFeedback.getMissingLabel( indices[regexI] ) + ": " + answerKeyMatches[regexI] + " >>>\n");
+                }
+                missingStr.append( "\n" );
+            }else{
+                output.append( text.subSequence( textEndIndex + 1, textStartIndex ).toString().replace("\n", RefinedFeedback.PARAGRAPH_SYMBOL + "\n" ) );
+                output.append( missingStr );
+                missingStr.setLength(0);
+                textEndIndex = indices[regexI][1];
+                output.append( RefinedFeedback.FLANKING_STR + text.subSequence( textStartIndex, textEndIndex + 1).toString().toUpperCase().replace("\n", RefinedFeedback.PARAGRAPH_SYMBOL + "\n" ) + RefinedFeedback.FLANKING_STR );
+            }
+        }
+        output.append( text, textEndIndex + 1, text.length() );
+        output.append( missingStr );
+        return output.toString();
+    }
+
+    // Rendering the annotated view in one pass should give the same view as building it with strings (with and without escaping the backslashes for codePost)
+    public static void testAnnotatedViewWriter(){
+        String text = "ab\\cd C:\\temp\\new\nline \\\\ end\n";
+        String[] regexes = {"ab", "\\\\cd", "x*", "temp", "98\\.8", "zz", "new\\nline", "end\\n"};
+        String[] answerKeyMatches = {"ab", "\\cd", "", "temp", "98\\.8 (e.g., 98.8)", "zz", "new line", "end"};
+        int[][][] tests = {
+            // adjacent matches, an empty match, a match with a newline and matches at the start and the end (with missing items between them)
+            { {0, 1}, {2, 4}, {5, 4}, {9, 12}, {-1, -1}, {Rubric.TIMED_OUT, Rubric.TIMED_OUT}, {14, 21}, {26, 29} },
+            // an empty match at the start and adjacent empty matches
+            { {-1, -1}, {-1, -1}, {0, -1}, {0, -1}, {9, 12}, {-1, -1}, {-1, -1}, {-1, -1} },
+            // all missing
+            { {-1, -1}, {-1, -1}, {-1, -1}, {-1, -1}, {-1, -1}, {-1, -1}, {-1, -1}, {-1, -1} },
+            // all found (with a backslash as a match)
+            { {0, 1}, {2, 4}, {5, 4}, {9, 12}, {13, 13}, {14, 14}, {15, 21}, {26, 29} },
+        };
+        for( int testI = 0; testI < tests.length; ++testI){
+            int[][] indices = tests[testI];
+            String expected = getAnnotatedViewWithStrings( regexes, text, indices, answerKeyMatches );
+            for( boolean escapeBackslashes : new boolean[]{ false, true } ){
+                StringBuilder view = new StringBuilder();
+                try{
+                    AnnotatedViewWriter writer = new AnnotatedViewWriter( view, escapeBackslashes );
+                    writer.write( regexes, text, indices, answerKeyMatches );
+                    writer.flush();
+                }catch( IOException e ){
+                    System.out.println( "ERROR: " + e );
+                }
+                String expectedView = escapeBackslashes ? expected.replace( "\\", "\\\\" ) : expected;
+                System.out.println( "DEBUGGING: AnnotatedViewWriter (" + testI + ( escapeBackslashes ? ", escaped" : "" ) + "): " + ( view.toString().equals( expectedView ) ? "OK" : "MISMATCH" ) );
+            }
+        }
+    }
+
+    // The case-folded Boyer-Moore-Horspool search should find the same matches as Pattern (with the rubric's flags) from every index
+    public static void testLiteralPattern(){
+        String[][] tests = {
+            // description, regex, text
+            { "mixed case", "Hello World", "hELLo wORLD, HELLO WORLD and hello world" },
+            { "matches at the start and the end", "abc", "abcxxABCxxabc" },
+            { "overlapping prefixes", "aab", "aaab aaaab aab" },
+            { "overlapping occurrences", "abab", "abababab" },
+            { "escaped metacharacter", "98\\.8", "98x8 98.8 98.88" },
+            { "non-ASCII letters are case-sensitive", "caf\u00e9", "CAF\u00c9 caf\u00c9 CAF\u00e9" },
+            { "characters that share a shift", "\u0161b", "ab \u0161b" },
+            { "literal longer than the text", "universe", "uni" },
+        };
+        for( String[] test : tests ){
+            String regex = test[1];
+            String text = test[2];
+            LiteralPattern literalPattern = LiteralPattern.compile( regex, RefinedFeedback.DEFAULT_REGEX_FLAGS );
+            Matcher matcher = Pattern.compile( regex, RefinedFeedback.DEFAULT_REGEX_FLAGS ).matcher( text );
+            boolean same = ( literalPattern != null );
+            List<Integer> starts = new ArrayList<Integer>(); // where each match starts (from each index)
+            for( int fromIndex = 0; same && fromIndex <= text.length(); ++fromIndex){
+                int start = literalPattern.indexOf( text, fromIndex, text.length() );
+                same = ( start == ( matcher.find( fromIndex ) ? matcher.start() : -1 ) );
+                if( start >= 0 && ! starts.contains( start ) ){
+                    starts.add( start );
+                }
+            }
+            System.out.println( "DEBUGGING: LiteralPattern (" + test[0] + "): " + ( same ? "OK" : "MISMATCH" ) + " " + starts );
+        }
+    }
+
+    // Finding all of the literals in a single pass should give the same indices as searching for each regex separately
+    // (including repeated, overlapping and duplicate literals, literals that occur before where the previous regex matched and missing literals)
+    public static void testSinglePass(){
+        String[][] rubrics = { {"aba", "ab", "aba", "ba", "b", "abab", "a", "zz", "a"},
+                               {"b", "ab", "a", "bab", "ABA"},
+                               {"ab", "b.a", "ba", "ab", "bab", "a"},
+                               {"life", "universe", "42", "life", "e"},
+                               // once a literal is missing, the rest are found in one pass
+                               {"zz", "aba", "ab", "aba", "ba", "b", "abab", "a", "zz", "a"},
+                               {"zz", "ab", "b.a", "ba", "ab", "bab", "a", "b"},
+                               {"zz", "b", "ab", "a", "bab", "ABA", "b"} };
+        String[] submissions = { "xABAbababa ab aba\n",
+                                 "abab ab\nba\n",
+                                 "The answer to life,\nthe universe\nand everything is 42.\nNext question please.\n" };
+        for( String[] regexes : rubrics ){
+            Rubric rubric = new Rubric( regexes );
+            Rubric singlePassRubric = rubric.withEngine( Rubric.Engine.SINGLE_PASS );
+            for( String submission : submissions ){
+                int[][] indices = rubric.getMatchingIndices( submission );
+                int[][] singlePassIndices = singlePassRubric.getMatchingIndices( submission );
+                System.out.println( "DEBUGGING: Single pass: " + ( Arrays.deepEquals( indices, singlePassIndices ) ? "OK" : "MISMATCH" ) + ": " + Arrays.deepToString( singlePassIndices ) );
+            }
+        }
+    }
+
+    // The second regex backtracks catastrophically, so it should be reported as timed out (and the rest of the regexes should still be found)
+    public static void testTimeout(){
+        String[] regexes = {"life", "(.*a){25}x", "universe", "42"};
+        Rubric rubric = new Rubric( regexes ).withTimeouts( 50, 0 );
+
+        String submission = "The answer to life, aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa!\nthe universe\nand everything is 42.\n";
+        int[][] indices = rubric.getMatchingIndices( submission );
+        System.out.println( "DEBUGGING: Indices: " + Arrays.deepToString( indices ) );
+        System.out.println( RefinedFeedback.getAnnotatedView( regexes, submission, indices, regexes ) );
+    }
+
+    // The greedy regexes from README.md, a regex that backtracks exponentially and one with nothing to report
+    public static void testAnalyzer(){
+        String[] regexes = {"length.+as a number", "width.+as a number", "(a|aa)+b", "area is 6"};
+        StringBuilder report = new StringBuilder();
+        try{
+            RubricAnalyzer.writeReport( report, new RubricAnalyzer().analyze( regexes ) );
+        }catch( IOException e ){
+            throw new IllegalStateException( e ); // not possible for a StringBuilder
+        }
+        System.out.println( report );
+    }
+
+    // "universe" is misspelled (and suggested), "42" is too short for a suggestion and "question" is not a literal
+    public static void testSuggestions(){
+        String[] regexes = {"life", "universe", "42", "quest\\w+"};
+        Rubric rubric = new Rubric( regexes ).withSuggestions( 2 );
+
+        String submission = "The answer to life,\nthe univrese\nand everything is forty-two.\nNext question please.\n";
+        int[][] indices = rubric.getMatchingIndices( submission );
+        System.out.println( "DEBUGGING: Suggestions: " + Arrays.deepToString( ApproximateMatcher.findSuggestions( rubric, submission, indices ) ) );
+        System.out.println( RefinedFeedback.getFeedback( rubric, regexes, submission, indices ) );
+    }
+
+    public static void testMatchTable(){
+        String[] regexes = {"life", "universe", "everything", "42"};
+        Rubric rubric = new Rubric( regexes );
+        String[] submissions = { "life, the universe and everything: 42", "life and 42", "life", "the universe and everything" };
+        MatchTable table = new MatchTable( regexes, 1 );
+        for( int i = 0; i < submissions.length; ++i){
+            table.add( "submission" + i, submissions[i].length(), rubric.getMatchingIndices( submissions[i] ) );
+        }
+        try{
+            table.writeReport( System.out, 3, 4 );
+        }catch( IOException e ){
+            System.out.println( "ERROR: " + e );
+        }
+    }
+
+    public static void testTranscript(){
+        String[] regexes = {"length.+as a number", "width.+as a number", "area is 6"};
+        Rubric rubric = new Rubric( regexes );
+        String submission = "Please enter the length as a number: Please enter the width as a number: The area is 6.0\n";
+        Transcript transcript = new Transcript( new String[]{ "2", "3" } );
+        System.out.println( "DEBUGGING: Segment starts: " + Arrays.toString( transcript.findSegmentStarts( submission ) ) );
+        System.out.println( RefinedFeedback.getFeedback( rubric, regexes, submission, transcript.getMatchingIndices( rubric, null, submission ) ) );
+        // without regions, all of the submission is searched (i.e., the first regex greedily matches the second prompt)
+        System.out.println( "DEBUGGING: Indices without regions: " + Arrays.deepToString( rubric.getMatchingIndices( submission, null ) ) );
+
+        // ^ and \b only match at the start of a segment if they would in all of the submission (i.e., "The area" is not at the start of a line)
+        String[] anchoredRegexes = {"length.+as a number", "^The area", "\\bwidth\\b", "\\b6"};
+        Rubric anchoredRubric = new Rubric( anchoredRegexes );
+        int[] segments = transcript.getSegments( anchoredRubric, submission );
+        int[][] indices = transcript.getMatchingIndices( anchoredRubric, segments, submission );
+        System.out.println( "DEBUGGING: Segments: " + Arrays.toString( segments ) + ", indices: " + Arrays.deepToString( indices ) );
+        System.out.println( "DEBUGGING: Indices while finding the segments: " + ( Arrays.deepEquals( indices, transcript.getMatchingIndices( anchoredRubric, null, submission ) ) ? "OK" : "MISMATCH" ) );
+    }
+
+    /**
+     * Reads bytes with BoundedInput (keeping at most maxBytes of them) and compares the text to expected
+     * @param expected Expected text if the default charset is UTF-8 (see getExpectedText())
+     */
+    public static void testBoundedInput( String description, byte[] bytes, long maxBytes, String expected ){
+        try{
+            String text = BoundedInput.read( new ByteArrayInputStream( bytes ), maxBytes ).toString();
+            String shown = text.replace( "\r", "\\r" ).replace( "\n", "\\n" );
+            System.out.println( "DEBUGGING: BoundedInput (" + description + "): " + ( text.equals( getExpectedText( expected, bytes, maxBytes ) ) ? "OK" : "MISMATCH" ) + ": \"" + shown + "\"" );
+        }catch( IOException e ){
+            System.out.println( "ERROR: " + e );
+        }
+    }
+
+    /**
+     * The inputs are encoded with UTF-8, but BoundedInput decodes them with the default charset (e.g., each byte of a non-ASCII character is \ufffd with US-ASCII)
+     * @param expectedUtf8 Expected text (with \n line separators) if the default charset is UTF-8
+     * @param bytes Input
+     * @param maxBytes Maximum number of bytes kept (the first maxBytes - maxBytes / 2 and the last maxBytes / 2)
+     * @return expectedUtf8 if the default charset is UTF-8, otherwise the bytes that are kept decoded with the default charset, with the line separators normalized
+     */
+    public static String getExpectedText( String expectedUtf8, byte[] bytes, long maxBytes ){
+        Charset charset = Charset.defaultCharset();
+        String ls = System.getProperty("line.separator");
+        if( charset.equals( StandardCharsets.UTF_8 ) ){
+            return expectedUtf8.replace( "\n", ls );
+        }
+        if( bytes.length <= maxBytes ){
+            return normalizeLineSeparators( new String( bytes, charset ), ls, true );
+        }
+        int headLength = (int) ( maxBytes - maxBytes / 2 );
+        int tailLength = (int) ( maxBytes / 2 );
+        return normalizeLineSeparators( new String( bytes, 0, headLength, charset ), ls, false )
+            + normalizeLineSeparators( new String( bytes, bytes.length - tailLength, tailLength, charset ), ls, true );
+    }
+
+    /**
+     * @return text with each \r\n, \r and \n replaced with ls (and with ls added to the end if isEnd and it is missing)
+     */
+    public static String normalizeLineSeparators( String text, String ls, boolean isEnd ){
+        String normalized = text.replace( "\r\n", "\n" ).replace( '\r', '\n' ).replace( "\n", ls );
+        if( isEnd && normalized.length() > 0 && ! normalized.endsWith( ls ) ){
+            normalized += ls;
+        }
+        return normalized;
+    }
+
+    // Nothing is omitted, but the input does not fit in the head window, so a character or \r\n is split between the head and the tail
+    public static void testBoundedInputSeam(){
+        testBoundedInput( "multi-byte character on the seam", "abcde\u00e9 xyz\n".getBytes( StandardCharsets.UTF_8 ), 12, "abcde\u00e9 xyz\n" );
+        testBoundedInput( "\\r\\n on the seam", "abcde\r\nfgh\n".getBytes( StandardCharsets.UTF_8 ), 12, "abcde\nfgh\n" );
+    }
+
+    /**
+     * Compares text read with BoundedInput to expected, and shows how it was read (US-ASCII without decoding, decoded or truncated)
+     */
+    public static void checkBoundedInput( String description, CharSequence text, String expected ){
+        String kind = ( text instanceof AsciiCharSequence ) ? "US-ASCII" : ( text instanceof BoundedInput.TruncatedText ) ? "truncated at " + BoundedInput.getElisionIndex( text ) : "decoded";
+        String shown = text.toString().replace( "\r", "\\r" ).replace( "\n", "\\n" );
+        System.out.println( "DEBUGGING: BoundedInput (" + description + "): " + ( text.toString().equals( expected ) ? "OK" : "MISMATCH" ) + " (" + kind + "): \"" + shown + "\"" );
+    }
+
+    // Input under, at and over the limit (12 bytes, so the head and tail are 6 bytes each), from a stream and from a (memory-mapped) file
+    public static void testBoundedInputLimit(){
+        String[][] tests = {
+            // description, input (encoded with UTF-8), expected text (if the default charset is UTF-8)
+            { "under the limit", "Hello\nWorld\n", "Hello\nWorld\n" },
+            { "under the limit, without a final newline", "Hello\nWorld", "Hello\nWorld\n" },
+            { "under the limit, non-ASCII without a final newline", "caf\u00e9", "caf\u00e9\n" },
+            { "at the limit", "Hello World\n", "Hello World\n" },
+            { "at the limit, with a multi-byte character on the seam", "Hello\u00e9orld\n", "Hello\u00e9orld\n" },
+            { "at the limit, with \\r\\n on the seam", "Hello\r\nWorl\n", "Hello\nWorl\n" },
+            { "over the limit", "0123456789\nabcdefghij\n", "012345fghij\n" },
+            { "over the limit, with a multi-byte character on the seam", "abcde\u00e9 0123456789 wxyz\n", "abcde\ufffd wxyz\n" },
+            { "over the limit, with \\r\\n on the seam", "abcde\r\n0123456789\nxyz\n", "abcde\n9\nxyz\n" },
+            { "over the limit, without a final newline", "0123456789abcdefghij", "012345efghij\n" },
+        };
+        for( String[] test : tests ){
+            byte[] bytes = test[1].getBytes( StandardCharsets.UTF_8 );
+            try{
+                String expected = getExpectedText( test[2], bytes, 12 );
+                checkBoundedInput( test[0], BoundedInput.read( new ByteArrayInputStream( bytes ), 12 ), expected );
+                File file = File.createTempFile( "RefinedFeedbackTest", ".txt" );
+                try{
+                    Files.write( file.toPath(), bytes );
+                    checkBoundedInput( test[0] + ", from a file", BoundedInput.read( file, 12 ), expected );
+                }finally{
+                    file.delete();
+                }
+            }catch( IOException e ){
+                System.out.println( "ERROR: " + e );
+            }
+        }
+    }
+
     public static void main( String[] args ){
         testCheckingAccount();
         testCheckingAccount2();
+        testCheckingAccount2Aligned();
+        testAlignedWordBoundary();
         testVideoGameChar();
+        testReusedRubric();
+        testLiteralPattern();
+        testAnnotatedViewWriter();
+        testSinglePass();
+        testTimeout();
+        testAnalyzer();
+        testSuggestions();
+        testMatchTable();
+        testTranscript();
+        testBoundedInputSeam();
+        testBoundedInputLimit();
     }
 }
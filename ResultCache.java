@@ -0,0 +1,316 @@
+/**
+ * Cache of the indices found for submissions (e.g., for resubmissions with the same output and for re-grading a whole class after the
+ * explanations change), kept in memory (least-recently used entries are removed first) and in a directory (oldest entries are removed
+ * first once the directory is too big).
+ * Entries are keyed by the SHA-256 hash of the rubric (its regexes, flags and engine) and of the submission's output.
+ * The strings displayed for missing regexes are not part of the key, since the annotated view is rendered again from the indices.
+ * Results with a regex that timed out are not cached (the search might finish the next time).
+ * Thread-safe.  One instance is shared by everything in a process that uses the same directory (see forDirectory()).
+ * @author Hyrum D. Carroll
+ * @version 1.0, (Oct 17, 2026)
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ResultCache{
+
+    public final static int DEFAULT_MAX_ENTRIES = 10000;              // in memory
+    public final static long DEFAULT_MAX_DISK_BYTES = 64L * 1024 * 1024; // in the directory
+    public final static String FILE_EXTENSION = ".indices";
+
+    private final static int MAGIC = 0x52464331; // "RFC1"
+    private final static int CHARS_PER_UPDATE = 4096; // number of characters hashed at a time
+
+    private final static Map<File, ResultCache> caches = new HashMap<File, ResultCache>(); // shared instance for each directory
+
+    private final File dir;
+    private final long maxDiskBytes;
+    private final AtomicLong diskBytes = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final Map<String, int[][]> entries; // access is synchronized on the map
+
+    /**
+     * @param dir Directory to keep the entries in (created if it does not exist) or null to only keep them in memory
+     * @param maxEntries Maximum number of entries to keep in memory
+     * @param maxDiskBytes Maximum number of bytes of entries to keep in dir
+     */
+    public ResultCache( File dir, final int maxEntries, long maxDiskBytes ){
+        this.dir = dir;
+        this.maxDiskBytes = maxDiskBytes;
+        this.entries = new LinkedHashMap<String, int[][]>( 16, 0.75f, true ){
+            protected boolean removeEldestEntry( Map.Entry<String, int[][]> eldest ){
+                return size() > maxEntries;
+            }
+        };
+        if( dir != null ){
+            if( ! dir.isDirectory() && ! dir.mkdirs() ){
+                throw new IllegalArgumentException("Unable to create cache directory " + dir );
+            }
+            for( File file : listEntryFiles() ){
+                diskBytes.addAndGet( file.length() );
+            }
+        }
+    }
+
+    /**
+     * @param dir Directory to keep the entries in
+     * @return The cache for dir (with the default limits), which is shared with everything else in this process that uses dir
+     */
+    public static ResultCache forDirectory( File dir ){
+        File key = dir.getAbsoluteFile();
+        synchronized( caches ){
+            ResultCache cache = caches.get( key );
+            if( cache == null ){
+                cache = new ResultCache( key, DEFAULT_MAX_ENTRIES, DEFAULT_MAX_DISK_BYTES );
+                caches.put( key, cache );
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * @param rubric Compiled regexes
+     * @param text Output of a submission
+     * @return The key (a hex string) for the indices found by rubric in text
+     */
+    public static String getKey( Rubric rubric, CharSequence text ){
+        MessageDigest digest;
+        try{
+            digest = MessageDigest.getInstance("SHA-256");
+        }catch( NoSuchAlgorithmException e ){
+            throw new IllegalStateException( e ); // every Java platform has SHA-256
+        }
+        // each string is prefixed with its length so that different rubrics can not be the same bytes
+        updateString( digest, rubric.getEngine().name() );
+        updateInt( digest, rubric.getFlags() );
+        updateInt( digest, rubric.size() );
+        for(int regexI = 0; regexI < rubric.size(); ++regexI){
+            updateString( digest, rubric.getRegex( regexI ) );
+        }
+        updateInt( digest, text.length() );
+        int elisionIndex = BoundedInput.getElisionIndex( text );
+        if( elisionIndex >= 0 ){
+            updateInt( digest, elisionIndex ); // matches can not include text from both sides of it
+        }
+        byte[] bytes = new byte[ 2 * CHARS_PER_UPDATE ];
+        for( int start = 0; start < text.length(); start += CHARS_PER_UPDATE ){
+            int end = Math.min( start + CHARS_PER_UPDATE, text.length() );
+            for( int i = start; i < end; ++i){
+                char c = text.charAt(i);
+                bytes[ 2 * (i - start) ] = (byte) ( c >> 8 );
+                bytes[ 2 * (i - start) + 1 ] = (byte) c;
+            }
+            digest.update( bytes, 0, 2 * (end - start) );
+        }
+
+        StringBuilder key = new StringBuilder();
+        for( byte b : digest.digest() ){
+            key.append( Character.forDigit( (b >> 4) & 0xf, 16 ) ).append( Character.forDigit( b & 0xf, 16 ) );
+        }
+        return key.toString();
+    }
+
+    private static void updateInt( MessageDigest digest, int value ){
+        digest.update( new byte[]{ (byte) (value >> 24), (byte) (value >> 16), (byte) (value >> 8), (byte) value } );
+    }
+
+    private static void updateString( MessageDigest digest, String str ){
+        byte[] bytes = str.getBytes( StandardCharsets.UTF_8 );
+        updateInt( digest, bytes.length );
+        digest.update( bytes );
+    }
+
+    /**
+     * @param key Key from getKey()
+     * @return A copy of the cached indices (or null if they are not cached)
+     */
+    public int[][] get( String key ){
+        int[][] indices;
+        synchronized( entries ){
+            indices = entries.get( key );
+        }
+        if( indices == null && dir != null ){
+            indices = read( new File( dir, key + FILE_EXTENSION ) );
+            if( indices != null ){
+                synchronized( entries ){
+                    entries.put( key, indices );
+                }
+            }
+        }
+        if( indices == null ){
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return copy( indices );
+    }
+
+    /**
+     * Caches indices (unless a regex timed out)
+     * @param key Key from getKey()
+     * @param indices Indices to cache
+     */
+    public void put( String key, int[][] indices ){
+        for( int[] regexIndices : indices ){
+            if( regexIndices[0] == Rubric.TIMED_OUT ){
+                return;
+            }
+        }
+        indices = copy( indices );
+        synchronized( entries ){
+            entries.put( key, indices );
+        }
+        if( dir != null ){
+            try{
+                write( new File( dir, key + FILE_EXTENSION ), indices );
+            }catch( IOException e ){
+                RefinedFeedback.DEBUG( "Unable to write to the result cache: " + e.getMessage() );
+            }
+        }
+    }
+
+    /**
+     * @return The number of lookups that were found in the cache
+     */
+    public long getHits(){
+        return hits.get();
+    }
+
+    /**
+     * @return The number of lookups that were not found in the cache
+     */
+    public long getMisses(){
+        return misses.get();
+    }
+
+    private static int[][] copy( int[][] indices ){
+        int[][] copy = new int[ indices.length ][];
+        for( int regexI = 0; regexI < indices.length; ++regexI){
+            copy[regexI] = indices[regexI].clone();
+        }
+        return copy;
+    }
+
+    /**
+     * @return The indices in file (or null if it does not exist or is not valid)
+     */
+    private int[][] read( File file ){
+        if( ! file.isFile() ){
+            return null;
+        }
+        try{
+            DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( file ) ) );
+            try{
+                if( in.readInt() != MAGIC ){
+                    return null;
+                }
+                int numRegexes = in.readInt();
+                if( numRegexes < 0 || numRegexes > file.length() / 8 ){
+                    return null;
+                }
+                int[][] indices = new int[ numRegexes ][2];
+                for( int regexI = 0; regexI < numRegexes; ++regexI){
+                    indices[regexI][0] = in.readInt();
+                    indices[regexI][1] = in.readInt();
+                }
+                file.setLastModified( System.currentTimeMillis() ); // so that recently used entries are removed last
+                return indices;
+            }finally{
+                in.close();
+            }
+        }catch( IOException e ){
+            return null; // e.g., removed by another process
+        }
+    }
+
+    /**
+     * Writes indices to file (to a temporary file that is then renamed, so that other processes never read a partial entry)
+     */
+    private void write( File file, int[][] indices ) throws IOException{
+        if( file.isFile() ){
+            return;
+        }
+        File tempFile = File.createTempFile( file.getName(), ".tmp", dir );
+        try{
+            DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( tempFile ) ) );
+            try{
+                out.writeInt( MAGIC );
+                out.writeInt( indices.length );
+                for( int[] regexIndices : indices ){
+                    out.writeInt( regexIndices[0] );
+                    out.writeInt( regexIndices[1] );
+                }
+            }finally{
+                out.close();
+            }
+            long length = tempFile.length();
+            if( tempFile.renameTo( file ) && diskBytes.addAndGet( length ) > maxDiskBytes ){
+                evict();
+            }
+        }finally{
+            tempFile.delete(); // nothing to delete if it was renamed
+        }
+    }
+
+    /**
+     * Removes the least-recently used entries from the directory until it is at 3/4 of its maximum size
+     */
+    private synchronized void evict(){
+        if( diskBytes.get() <= maxDiskBytes ){
+            return; // another thread already did it
+        }
+        File[] files = listEntryFiles();
+        final long[] lastModified = new long[ files.length ];
+        Integer[] order = new Integer[ files.length ];
+        long total = 0;
+        for( int i = 0; i < files.length; ++i){
+            lastModified[i] = files[i].lastModified(); // read once, so that the order does not change while sorting
+            order[i] = i;
+            total += files[i].length();
+        }
+        Arrays.sort( order, new Comparator<Integer>(){
+                public int compare( Integer a, Integer b ){
+                    return Long.compare( lastModified[a], lastModified[b] );
+                }
+            });
+        for( int i = 0; i < order.length && total > maxDiskBytes * 3 / 4; ++i){
+            File file = files[ order[i] ];
+            long length = file.length();
+            if( file.delete() ){
+                total -= length;
+            }
+        }
+        diskBytes.set( total );
+    }
+
+    private File[] listEntryFiles(){
+        File[] files = dir.listFiles();
+        if( files == null ){
+            return new File[0];
+        }
+        int numEntryFiles = 0;
+        for( File file : files ){
+            if( file.getName().endsWith( FILE_EXTENSION ) ){
+                files[ numEntryFiles++ ] = file;
+            }
+        }
+        return Arrays.copyOf( files, numEntryFiles );
+    }
+}
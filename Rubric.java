@@ -0,0 +1,781 @@
+/**
+ * Immutable, precompiled set of ordered regular expressions (regexes) to match against outputs (e.g., students' submissions).
+ * Compiling once and reusing the same Rubric for every submission avoids recompiling the regexes for each output.
+ * Instances are thread-safe (a new Matcher is created for each call).
+ * Regexes that only match literal text (e.g., "Welcome" or "98\\.8") are searched for with a LiteralPattern instead of a Matcher.
+ * Optionally, the time spent searching for each regex (and for all of the regexes in a submission) can be limited (see withTimeouts())
+ * and the literals can be found in a single pass over the output (see withEngine()).
+ * A RubricListener can be attached to time each search (see withListener()) and a ResultCache to skip searching outputs that have already been searched (see withResultCache()).
+ * Near misses for missing literals can be suggested in the annotated view (see withSuggestions()).
+ * Each regex can also be restricted to its own region of the output (e.g., a segment of a transcript, see Transcript).
+ * Matches never include text from both sides of the bytes omitted from a truncated output (see BoundedInput.TruncatedText).
+ * @author Hyrum D. Carroll
+ * @version 1.0, (Oct 17, 2026)
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class Rubric{
+
+    public final static int NOT_FOUND = -1; // index used when a regex is not found
+    public final static int TIMED_OUT = -2; // index used when searching for a regex took too long
+
+    private final static int CHARS_PER_DEADLINE_CHECK = 4096; // number of characters read between checking the time
+    public final static int MAX_CANDIDATES_PER_REGEX = 1000;  // maximum number of matches considered for each regex (for Engine.ALIGN)
+
+    private final static AtomicLong timeoutCount = new AtomicLong(); // total number of searches that timed out (for all rubrics)
+
+    private final String[] regexes;   // source of each regex (in order)
+    private final int flags;          // flags used to compile each regex
+    private final Pattern[] patterns; // compiled regexes (in the same order as regexes)
+    private final LiteralPattern[] literals; // literal version of each regex (null if the regex is not just a literal)
+    private final long regexTimeoutNanos;      // maximum time to search for each regex (0 for no limit)
+    private final long submissionTimeoutNanos; // maximum time to search for all of the regexes in a submission (0 for no limit)
+    private final Engine engine;
+    private final MultiPatternMatcher multiPatternMatcher; // all of the literals (only for Engine.SINGLE_PASS)
+    private final int[] literalIndices;                     // index of each regex's literal in multiPatternMatcher (-1 if it is not a literal)
+    private final long[] compileNanos;   // time spent compiling each regex
+    private final RubricListener listener; // null if the searches are not timed
+    private final ResultCache resultCache; // null if the indices are not cached
+    private final int maxSuggestionDistance; // maximum edit distance of the suggestions for missing literals (0 for none)
+
+    /**
+     * How the regexes are searched for (SEQUENTIAL and SINGLE_PASS give the same indices, but ALIGN can match different text by design)
+     */
+    public enum Engine{
+        SEQUENTIAL,  // each regex is searched for separately (starting after the previous match)
+        SINGLE_PASS, // once a literal is missing, the rest of the literals are found in one pass over the rest of the text (with Aho-Corasick)
+        ALIGN        // finds the most regexes that can be matched in order (instead of the first match for each regex), see getMatchingIndicesAligned()
+    }
+
+    /**
+     * Compiles each of the regexes (ignoring casing)
+     * @param regexes Ordered list of regular expressions
+     */
+    public Rubric( String[] regexes ){
+        this( regexes, RefinedFeedback.DEFAULT_REGEX_FLAGS );
+    }
+
+    /**
+     * Compiles each of the regexes (according to the supplied flags)
+     * @param regexes Ordered list of regular expressions
+     * @param flags Flags to be used for each match
+     */
+    public Rubric( String[] regexes, int flags ){
+        this( regexes, flags, null );
+    }
+
+    /**
+     * Compiles each of the regexes (according to the supplied flags), reusing the patterns already compiled for other rubrics
+     * (e.g., for test cases that share items)
+     * @param regexes Ordered list of regular expressions
+     * @param flags Flags to be used for each match
+     * @param compiledPatterns Patterns (all compiled with flags) by their regex, which the new patterns are added to (null to not share them)
+     */
+    public Rubric( String[] regexes, int flags, Map<String, Pattern> compiledPatterns ){
+        this.regexes = regexes.clone();
+        this.flags = flags;
+        this.patterns = new Pattern[ regexes.length ];
+        this.literals = new LiteralPattern[ regexes.length ];
+        this.compileNanos = new long[ regexes.length ];
+        for(int regexI = 0; regexI < regexes.length; ++regexI){
+            long startTime = System.nanoTime();
+            Pattern pattern = ( compiledPatterns != null ) ? compiledPatterns.get( regexes[regexI] ) : null;
+            if( pattern == null ){
+                pattern = Pattern.compile( regexes[regexI], flags ); // always compiled so that invalid regexes are still reported
+                if( compiledPatterns != null ){
+                    compiledPatterns.put( regexes[regexI], pattern );
+                }
+            }
+            patterns[regexI] = pattern;
+            literals[regexI] = LiteralPattern.compile( regexes[regexI], flags );
+            compileNanos[regexI] = System.nanoTime() - startTime;
+        }
+        this.regexTimeoutNanos = 0;
+        this.submissionTimeoutNanos = 0;
+        this.engine = Engine.SEQUENTIAL;
+        this.multiPatternMatcher = null;
+        this.literalIndices = null;
+        this.listener = null;
+        this.resultCache = null;
+        this.maxSuggestionDistance = 0;
+    }
+
+    /**
+     * Copies rubric (sharing its compiled regexes) with different time limits, engine, listener, cache and/or suggestions
+     */
+    private Rubric( Rubric rubric, long regexTimeoutNanos, long submissionTimeoutNanos, Engine engine, RubricListener listener, ResultCache resultCache, int maxSuggestionDistance ){
+        this.regexes = rubric.regexes;
+        this.flags = rubric.flags;
+        this.patterns = rubric.patterns;
+        this.literals = rubric.literals;
+        this.compileNanos = rubric.compileNanos;
+        this.listener = listener;
+        this.resultCache = resultCache;
+        this.maxSuggestionDistance = maxSuggestionDistance;
+        this.regexTimeoutNanos = regexTimeoutNanos;
+        this.submissionTimeoutNanos = submissionTimeoutNanos;
+        this.engine = engine;
+        if( engine != Engine.SINGLE_PASS ){
+            this.multiPatternMatcher = null;
+            this.literalIndices = null;
+        }else if( rubric.multiPatternMatcher != null ){
+            this.multiPatternMatcher = rubric.multiPatternMatcher;
+            this.literalIndices = rubric.literalIndices;
+        }else{
+            // combine all of the literals into one automaton
+            literalIndices = new int[ regexes.length ];
+            List<String> allLiterals = new ArrayList<String>();
+            for(int regexI = 0; regexI < regexes.length; ++regexI){
+                literalIndices[regexI] = -1;
+                if( literals[regexI] != null ){
+                    literalIndices[regexI] = allLiterals.size();
+                    allLiterals.add( literals[regexI].getLiteral() );
+                }
+            }
+            multiPatternMatcher = new MultiPatternMatcher( allLiterals.toArray( new String[0] ), (flags & Pattern.CASE_INSENSITIVE) != 0 );
+        }
+    }
+
+    /**
+     * @param engine How to search for the regexes
+     * @return A rubric with the same (compiled) regexes and time limits that uses engine
+     */
+    public Rubric withEngine( Engine engine ){
+        return new Rubric( this, regexTimeoutNanos, submissionTimeoutNanos, engine, listener, resultCache, maxSuggestionDistance );
+    }
+
+    /**
+     * @return How the regexes are searched for
+     */
+    public Engine getEngine(){
+        return engine;
+    }
+
+    /**
+     * Limits the time spent searching (e.g., for regexes that backtrack catastrophically).
+     * If the search for a regex takes too long, its indices are set to TIMED_OUT and the search continues with the next regex.
+     * Once the time for the submission is used up, the rest of the regexes are set to TIMED_OUT (except for literals, which are always searched for).
+     * @param regexTimeoutMillis Maximum number of milliseconds to search for each regex (0 for no limit)
+     * @param submissionTimeoutMillis Maximum number of milliseconds to search for all of the regexes (0 for no limit)
+     * @return A rubric with the same (compiled) regexes and the time limits
+     */
+    public Rubric withTimeouts( long regexTimeoutMillis, long submissionTimeoutMillis ){
+        if( regexTimeoutMillis < 0 || submissionTimeoutMillis < 0 ){
+            throw new IllegalArgumentException("Timeouts can not be negative");
+        }
+        return new Rubric( this, regexTimeoutMillis * 1000000L, submissionTimeoutMillis * 1000000L, engine, listener, resultCache, maxSuggestionDistance );
+    }
+
+    /**
+     * @param listener Receives the time spent on each search and submission (or null for none)
+     * @return A rubric with the same (compiled) regexes, time limits and engine that reports to listener
+     */
+    public Rubric withListener( RubricListener listener ){
+        return new Rubric( this, regexTimeoutNanos, submissionTimeoutNanos, engine, listener, resultCache, maxSuggestionDistance );
+    }
+
+    /**
+     * @param resultCache Cache of the indices found for outputs (or null for none)
+     * @return A rubric with the same (compiled) regexes, time limits, engine and listener that looks up (and saves) the indices in resultCache
+     */
+    public Rubric withResultCache( ResultCache resultCache ){
+        return new Rubric( this, regexTimeoutNanos, submissionTimeoutNanos, engine, listener, resultCache, maxSuggestionDistance );
+    }
+
+    /**
+     * Suggests the closest text (see ApproximateMatcher) for each literal regex that is missing from an output in its annotated view
+     * @param maxSuggestionDistance Maximum number of edits (insertions, deletions and substitutions) in a suggestion (0 for no suggestions)
+     * @return A rubric with the same (compiled) regexes, time limits, engine, listener and cache that suggests near misses
+     */
+    public Rubric withSuggestions( int maxSuggestionDistance ){
+        if( maxSuggestionDistance < 0 ){
+            throw new IllegalArgumentException("Maximum suggestion distance can not be negative");
+        }
+        return new Rubric( this, regexTimeoutNanos, submissionTimeoutNanos, engine, listener, resultCache, maxSuggestionDistance );
+    }
+
+    /**
+     * @return The maximum number of edits in a suggestion for a missing literal (0 for no suggestions)
+     */
+    public int getMaxSuggestionDistance(){
+        return maxSuggestionDistance;
+    }
+
+    /**
+     * @return The cache of the indices found for outputs (or null for none)
+     */
+    public ResultCache getResultCache(){
+        return resultCache;
+    }
+
+    /**
+     * @return The listener that the searches are reported to (or null for none)
+     */
+    public RubricListener getListener(){
+        return listener;
+    }
+
+    /**
+     * @param regexI Index of the regex
+     * @return The number of nanoseconds spent compiling the regex at index regexI
+     */
+    public long getCompileNanos( int regexI ){
+        return compileNanos[regexI];
+    }
+
+    /**
+     * @return The total number of searches (for all rubrics) that took too long (see withTimeouts())
+     */
+    public static long getTimeoutCount(){
+        return timeoutCount.get();
+    }
+
+    /**
+     * @return The number of regexes in this rubric
+     */
+    public int size(){
+        return regexes.length;
+    }
+
+    /**
+     * @return A copy of the (uncompiled) regexes
+     */
+    public String[] getRegexes(){
+        return regexes.clone();
+    }
+
+    /**
+     * @param regexI Index of the regex
+     * @return The (uncompiled) regex at index regexI
+     */
+    public String getRegex( int regexI ){
+        return regexes[regexI];
+    }
+
+    /**
+     * @param regexI Index of the regex
+     * @return The literal version of the regex at index regexI (or null if it is not just a literal)
+     */
+    public LiteralPattern getLiteral( int regexI ){
+        return literals[regexI];
+    }
+
+    /**
+     * @return The flags used to compile each regex
+     */
+    public int getFlags(){
+        return flags;
+    }
+
+    /**
+     * Finds the indices of the first non-overlapping match in the supplied text for each regex.
+     * The search for each regex starts immediately after the previous match (if any) and is done on a region of text (i.e., no copies of text are made).
+     * @param text Text to look for matches in (e.g., output of a student's submission)
+     * @return An array of two-element arrays with each two-element array containing the index of first and last matching characters in the corresponding regex.  If a regex is not found, the elements are set to NOT_FOUND (or TIMED_OUT if the search took too long).
+     */
+    public int[][] getMatchingIndices( CharSequence text ){
+        if( listener == null ){
+            return findMatchingIndices( text );
+        }
+        long startTime = System.nanoTime();
+        int[][] matches = findMatchingIndices( text );
+        listener.submissionMatched( text.length(), matches, System.nanoTime() - startTime );
+        return matches;
+    }
+
+    /**
+     * Same as getMatchingIndices( CharSequence ), but each regex is only searched for in its own region of text
+     * (always searched for like Engine.SEQUENTIAL and without the result cache, since the indices depend on the regions).
+     * Each region is searched as part of text (i.e., with transparent bounds and without anchoring bounds, see Matcher),
+     * so ^, $, \b and lookarounds only match where they would in all of text (not at the edges of the region).
+     * @param text Text to look for matches in (e.g., output of a student's submission)
+     * @param regions First index and the index after the last character of the region for each regex (a null region searches all of text,
+     *                and null regions is the same as getMatchingIndices( CharSequence ))
+     * @return Indices in the same format as getMatchingIndices( CharSequence )
+     */
+    public int[][] getMatchingIndices( CharSequence text, int[][] regions ){
+        if( regions == null ){
+            return getMatchingIndices( text );
+        }
+        long startTime = System.nanoTime();
+        int[][] matches = new int[regexes.length][];
+        Search search = new Search( text );
+        int startingSearchIndex = 0;
+        for(int regexI = 0; regexI < patterns.length; ++regexI){
+            int regionStart = ( regions[regexI] != null ) ? regions[regexI][0] : 0;
+            int regionEnd = ( regions[regexI] != null ) ? regions[regexI][1] : text.length();
+            matches[regexI] = search.find( regexI, Math.max( startingSearchIndex, regionStart ), regionEnd, true );
+            if( matches[regexI][0] >= 0 ){
+                startingSearchIndex = matches[regexI][1] + 1;
+            }
+        }
+        if( listener != null ){
+            listener.submissionMatched( text.length(), matches, System.nanoTime() - startTime );
+        }
+        return matches;
+    }
+
+    /**
+     * Finds the first match for a single regex in a region of text (searched as part of text, see getMatchingIndices( CharSequence, int[][] ))
+     * @param regexI Index of the regex
+     * @param text Text to look for the match in
+     * @param start Index in text to start searching from
+     * @param end Index after the last character of text to search
+     * @return The index of the first and last matching characters (or NOT_FOUND or TIMED_OUT for both)
+     */
+    public int[] find( int regexI, CharSequence text, int start, int end ){
+        return new Search( text ).find( regexI, start, end, true );
+    }
+
+    /**
+     * Same as getMatchingIndices() (without reporting to the listener)
+     */
+    private int[][] findMatchingIndices( CharSequence text ){
+        if( resultCache == null ){
+            return searchMatchingIndices( text );
+        }
+        String key = ResultCache.getKey( this, text );
+        int[][] matches = resultCache.get( key );
+        if( matches == null ){
+            matches = searchMatchingIndices( text );
+            resultCache.put( key, matches );
+        }
+        return matches;
+    }
+
+    /**
+     * Same as getMatchingIndices() (without reporting to the listener or using the cache)
+     */
+    private int[][] searchMatchingIndices( CharSequence text ){
+        if( engine == Engine.SINGLE_PASS ){
+            return getMatchingIndicesSinglePass( text );
+        }else if( engine == Engine.ALIGN ){
+            return getMatchingIndicesAligned( text );
+        }
+
+        int[][] matches = new int[regexes.length][];
+        Search search = new Search( text );
+
+        // initalize index for starting search position
+        int startingSearchIndex = 0;
+        for(int regexI = 0; regexI < patterns.length; ++regexI){
+            matches[regexI] = search.find( regexI, startingSearchIndex );
+            if( matches[regexI][0] >= 0 ){
+                // update starting search position
+                startingSearchIndex = matches[regexI][1] + 1;
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Same as getMatchingIndices(), but once a literal is missing, the rest of the literals are found with a single pass over the rest of text
+     * (instead of one search per literal, each of which reads the rest of text when the literal is missing).
+     * Until then, each literal is searched for separately (with LiteralPattern, which skips over most of the text instead of reading every character).
+     * Regexes that are not literals are always searched for individually.
+     */
+    private int[][] getMatchingIndicesSinglePass( CharSequence text ){
+        int[][] matches = new int[regexes.length][];
+        Search search = new Search( text );
+        MultiPatternMatcher.Scanner scanner = null; // (null until a literal is missing)
+
+        int startingSearchIndex = 0;
+        for(int regexI = 0; regexI < patterns.length; ++regexI){
+            int literalI = literalIndices[regexI];
+            if( literalI < 0 ){
+                matches[regexI] = search.find( regexI, startingSearchIndex );
+            }else if( scanner == null ){
+                matches[regexI] = search.find( regexI, startingSearchIndex );
+                if( matches[regexI][0] == NOT_FOUND ){
+                    scanner = multiPatternMatcher.scan( text, startingSearchIndex );
+                }
+            }else{
+                long startTime = ( listener != null ) ? System.nanoTime() : 0;
+                int matchStartIndex = scanner.indexOf( literalI, startingSearchIndex );
+                if( matchStartIndex >= 0 && search.crossesElision( matchStartIndex, matchStartIndex + literals[regexI].length() ) ){
+                    // every later occurrence that starts before the omitted bytes also includes text from both sides of them
+                    matchStartIndex = scanner.indexOf( literalI, search.getElisionIndex() );
+                }
+                if( matchStartIndex >= 0 ){
+                    matches[regexI] = new int[]{ matchStartIndex, matchStartIndex + literals[regexI].length() - 1 };
+                }else{
+                    matches[regexI] = new int[]{ NOT_FOUND, NOT_FOUND };
+                }
+                if( listener != null ){
+                    // the pass over the text is shared by all of the literals, so it is only included in the time for the submission
+                    listener.regexSearched( regexI, System.nanoTime() - startTime, getCharsScanned( matches[regexI], startingSearchIndex, text.length() ) );
+                }
+            }
+            if( matches[regexI][0] >= 0 ){
+                startingSearchIndex = matches[regexI][1] + 1;
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Finds the largest number of regexes that can be matched in order without overlapping (instead of the first match of each regex).
+     * For example, if the first regex only appears at the end of text, the greedy search (Engine.SEQUENTIAL) misses every other regex,
+     * but this leaves the first regex missing and matches the rest.
+     * The first MAX_CANDIDATES_PER_REGEX matches of each regex (found within one time limit for the regex) are considered and, for each number of regexes matched,
+     * the selection that ends the earliest is kept (similar to finding the longest increasing subsequence).
+     * @param text Text to look for matches in (e.g., output of a student's submission)
+     * @return Indices in the same format as getMatchingIndices()
+     */
+    private int[][] getMatchingIndicesAligned( CharSequence text ){
+        int numRegexes = regexes.length;
+        Search search = new Search( text );
+
+        // bestEnd[c] is the smallest index of the last matched character when c of the regexes processed so far are matched (in order)
+        int[] bestEnd = new int[ numRegexes + 1 ];
+        int[] bestNode = new int[ numRegexes + 1 ]; // last node in the selection for bestEnd[c] (-1 for none)
+        Arrays.fill( bestEnd, Integer.MAX_VALUE );
+        bestEnd[0] = -1;
+        bestNode[0] = -1;
+        int maxMatched = 0;
+
+        // nodes record the selected match for a regex and the previous node in the selection
+        int[] nodeRegex = new int[ numRegexes ];
+        int[] nodeStart = new int[ numRegexes ];
+        int[] nodeEnd = new int[ numRegexes ];
+        int[] nodeParent = new int[ numRegexes ];
+        int numNodes = 0;
+
+        boolean[] timedOut = new boolean[ numRegexes ];
+        for(int regexI = 0; regexI < numRegexes; ++regexI){
+            // collect the candidate matches (in order of their first character)
+            int[] starts = new int[ 16 ];
+            int[] ends = new int[ 16 ];
+            int numCandidates = 0;
+            int searchIndex = 0;
+            search.startRegex(); // (one time limit for all of the candidates)
+            while( numCandidates < MAX_CANDIDATES_PER_REGEX && searchIndex <= text.length() ){
+                // each candidate after the first is searched for as part of text (so ^ and \b do not match where the previous candidate started)
+                int[] match = search.find( regexI, searchIndex, text.length(), true );
+                if( match[0] == TIMED_OUT ){
+                    timedOut[regexI] = numCandidates == 0;
+                    break;
+                }else if( match[0] < 0 ){
+                    break;
+                }
+                if( numCandidates == starts.length ){
+                    starts = Arrays.copyOf( starts, numCandidates * 2 );
+                    ends = Arrays.copyOf( ends, numCandidates * 2 );
+                }
+                starts[numCandidates] = match[0];
+                ends[numCandidates] = match[1];
+                ++numCandidates;
+                searchIndex = match[0] + 1;
+            }
+            search.endRegex();
+            if( numCandidates == 0 ){
+                continue;
+            }
+
+            // smallest end (and its candidate) of the candidates starting at or after each candidate
+            int[] suffixMinCandidate = new int[ numCandidates ];
+            suffixMinCandidate[ numCandidates - 1 ] = numCandidates - 1;
+            for( int candidateI = numCandidates - 2; candidateI >= 0; --candidateI){
+                int laterCandidate = suffixMinCandidate[ candidateI + 1 ];
+                suffixMinCandidate[candidateI] = ( ends[candidateI] <= ends[laterCandidate] ) ? candidateI : laterCandidate;
+            }
+
+            // extend the selections (from the most matched down, so that each regex is only used once per selection)
+            for( int c = maxMatched; c >= 0; --c){
+                if( bestEnd[c] == Integer.MAX_VALUE ){
+                    continue;
+                }
+                // first candidate that starts after the selection's last matched character
+                int firstCandidate = upperBound( starts, numCandidates, bestEnd[c] );
+                if( firstCandidate >= numCandidates ){
+                    continue;
+                }
+                int candidateI = suffixMinCandidate[firstCandidate];
+                if( ends[candidateI] < bestEnd[ c + 1 ] ){
+                    if( numNodes == nodeRegex.length ){
+                        nodeRegex = Arrays.copyOf( nodeRegex, numNodes * 2 );
+                        nodeStart = Arrays.copyOf( nodeStart, numNodes * 2 );
+                        nodeEnd = Arrays.copyOf( nodeEnd, numNodes * 2 );
+                        nodeParent = Arrays.copyOf( nodeParent, numNodes * 2 );
+                    }
+                    nodeRegex[numNodes] = regexI;
+                    nodeStart[numNodes] = starts[candidateI];
+                    nodeEnd[numNodes] = ends[candidateI];
+                    nodeParent[numNodes] = bestNode[c];
+                    bestEnd[ c + 1 ] = ends[candidateI];
+                    bestNode[ c + 1 ] = numNodes;
+                    ++numNodes;
+                    maxMatched = Math.max( maxMatched, c + 1 );
+                }
+            }
+        }
+
+        int[][] matches = new int[ numRegexes ][];
+        for(int regexI = 0; regexI < numRegexes; ++regexI){
+            int index = timedOut[regexI] ? TIMED_OUT : NOT_FOUND;
+            matches[regexI] = new int[]{ index, index };
+        }
+        for( int node = bestNode[maxMatched]; node >= 0; node = nodeParent[node] ){
+            matches[ nodeRegex[node] ] = new int[]{ nodeStart[node], nodeEnd[node] };
+        }
+        return matches;
+    }
+
+    /**
+     * @return The number of characters from startingSearchIndex to the end of match (or to textLength if there is no match)
+     */
+    private static long getCharsScanned( int[] match, int startingSearchIndex, int textLength ){
+        return ( match[0] >= 0 ? match[1] + 1 : textLength ) - startingSearchIndex;
+    }
+
+    /**
+     * @return The index of the first of the first length (sorted) values that is greater than key (length if none are)
+     */
+    private static int upperBound( int[] values, int length, int key ){
+        int low = 0;
+        int high = length;
+        while( low < high ){
+            int mid = ( low + high ) >>> 1;
+            if( values[mid] <= key ){
+                low = mid + 1;
+            }else{
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Searches for individual regexes in a text (keeping track of the time limits for the text).
+     * Not thread-safe (a new one is created for each call to getMatchingIndices()).
+     */
+    private class Search{
+        private final CharSequence text;
+        private final int textLength;
+        private final CharSequence matcherText;             // text (wrapped if there is a time limit)
+        private final DeadlineCharSequence deadlineText;    // null if there is not a time limit
+        private final long submissionDeadline;
+        private final int elisionIndex;                     // where bytes were omitted from text (-1 if none were, see BoundedInput.TruncatedText)
+        private boolean regexStarted = false;               // true if the searches share the time limit for one regex (see startRegex())
+        private long regexStartTime;                        // time that the searches for the current regex started (if regexStarted)
+        private Matcher m = null;
+
+        Search( CharSequence text ){
+            this.text = text;
+            this.textLength = text.length();
+            this.elisionIndex = BoundedInput.getElisionIndex( text );
+            // only check the time if there is a limit
+            if( regexTimeoutNanos > 0 || submissionTimeoutNanos > 0 ){
+                deadlineText = new DeadlineCharSequence( text );
+                matcherText = deadlineText;
+                submissionDeadline = System.nanoTime() + submissionTimeoutNanos;
+            }else{
+                deadlineText = null;
+                matcherText = text;
+                submissionDeadline = 0;
+            }
+        }
+
+        /**
+         * Finds the first match for a regex at or after startingSearchIndex
+         * @param regexI Index of the regex
+         * @param startingSearchIndex Index in text to start searching from
+         * @return The index of the first and last matching characters (or NOT_FOUND or TIMED_OUT for both)
+         */
+        int[] find( int regexI, int startingSearchIndex ){
+            return find( regexI, startingSearchIndex, textLength, false );
+        }
+
+        /**
+         * Finds the first match for a regex at or after startingSearchIndex and before searchEndIndex
+         * @param regexI Index of the regex
+         * @param startingSearchIndex Index in text to start searching from
+         * @param searchEndIndex Index after the last character in text to search
+         * @param partOfText true to search the region as part of text (i.e., ^, $, \b and lookarounds only match where they would in all of text),
+         *                   false to search it like a substring of text (e.g., ^ matches at startingSearchIndex, as it always has for the rest of the text after the previous match)
+         * @return The index of the first and last matching characters (or NOT_FOUND or TIMED_OUT for both)
+         */
+        int[] find( int regexI, int startingSearchIndex, int searchEndIndex, boolean partOfText ){
+            if( startingSearchIndex > searchEndIndex ){
+                return new int[]{ NOT_FOUND, NOT_FOUND }; // empty region
+            }
+            if( listener == null ){
+                return search( regexI, startingSearchIndex, searchEndIndex, partOfText );
+            }
+            long startTime = System.nanoTime();
+            int[] match = search( regexI, startingSearchIndex, searchEndIndex, partOfText );
+            listener.regexSearched( regexI, System.nanoTime() - startTime, getCharsScanned( match, startingSearchIndex, searchEndIndex ) );
+            return match;
+        }
+
+        /**
+         * Starts the time limit for a regex that is shared by all of its searches until endRegex() (e.g., for each of its candidates),
+         * instead of each search having its own time limit
+         */
+        void startRegex(){
+            regexStarted = true;
+            regexStartTime = System.nanoTime();
+        }
+
+        /**
+         * Ends the time limit started by startRegex()
+         */
+        void endRegex(){
+            regexStarted = false;
+        }
+
+        /**
+         * @return The index in text where bytes were omitted (or -1 if none were)
+         */
+        int getElisionIndex(){
+            return elisionIndex;
+        }
+
+        /**
+         * @return true if text[start, end) includes characters from both sides of the omitted bytes (if any)
+         */
+        boolean crossesElision( int start, int end ){
+            return elisionIndex > start && elisionIndex < end;
+        }
+
+        /**
+         * Same as find() (without reporting to the listener)
+         */
+        private int[] search( int regexI, int startingSearchIndex, int searchEndIndex, boolean partOfText ){
+            if( crossesElision( startingSearchIndex, searchEndIndex ) ){
+                // a match can not include text from both sides of the omitted bytes, so search before them first
+                int[] match = searchRegion( regexI, startingSearchIndex, elisionIndex, partOfText );
+                if( match[0] != NOT_FOUND ){
+                    return match;
+                }
+                startingSearchIndex = elisionIndex;
+            }
+            return searchRegion( regexI, startingSearchIndex, searchEndIndex, partOfText );
+        }
+
+        /**
+         * Same as search(), but without regard to the omitted bytes
+         */
+        private int[] searchRegion( int regexI, int startingSearchIndex, int searchEndIndex, boolean partOfText ){
+            // record match (if found)
+            int matchStartIndex = NOT_FOUND;
+            int matchEndIndex = NOT_FOUND;
+
+            if( literals[regexI] != null ){
+                // literals are searched for in linear time, so they do not need to be timed
+                int literalIndex = literals[regexI].indexOf( text, startingSearchIndex, searchEndIndex );
+                if( literalIndex >= 0 ){
+                    matchStartIndex = literalIndex;
+                    matchEndIndex = literalIndex + literals[regexI].length() - 1;
+                }
+                return new int[]{ matchStartIndex, matchEndIndex };
+            }
+
+            // search for first match (by default, region bounds behave the same as searching a substring starting at startingSearchIndex)
+            if( m == null ){
+                m = patterns[regexI].matcher( matcherText );
+            }else{
+                m.usePattern( patterns[regexI] );
+            }
+            m.region( startingSearchIndex, searchEndIndex );
+            m.useAnchoringBounds( ! partOfText );
+            m.useTransparentBounds( partOfText );
+
+            if( deadlineText != null && ! deadlineText.startSearch( submissionDeadline, regexStarted ? regexStartTime : System.nanoTime() ) ){
+                matchStartIndex = TIMED_OUT;
+                matchEndIndex = TIMED_OUT;
+            }else{
+                try{
+                    if( m.find() ){
+                        matchStartIndex = m.start();
+                        matchEndIndex = m.end() - 1;
+                    }
+                }catch( TimeoutException e ){
+                    // took too long, so move on to the next regex (searching from the same position)
+                    timeoutCount.incrementAndGet();
+                    matchStartIndex = TIMED_OUT;
+                    matchEndIndex = TIMED_OUT;
+                }
+            }
+            return new int[]{ matchStartIndex, matchEndIndex };
+        }
+    }
+
+    /**
+     * Thrown (without a stack trace) by DeadlineCharSequence once its deadline has passed
+     */
+    private static class TimeoutException extends RuntimeException{
+        private static final long serialVersionUID = 1L;
+
+        TimeoutException(){
+            super( "Search timed out", null, false, false );
+        }
+    }
+
+    /**
+     * Wraps a CharSequence so that reading from it (e.g., by a Matcher) throws a TimeoutException once the deadline has passed.
+     * The time is only checked every CHARS_PER_DEADLINE_CHECK characters.
+     */
+    private class DeadlineCharSequence implements CharSequence{
+        private final CharSequence text;
+        private long deadline;
+        private int charsUntilCheck = CHARS_PER_DEADLINE_CHECK;
+
+        DeadlineCharSequence( CharSequence text ){
+            this.text = text;
+        }
+
+        /**
+         * Sets the deadline for the next search
+         * @param submissionDeadline Deadline for all of the searches in the submission
+         * @param regexStartTime Time that the search for the regex started (its deadline is regexTimeoutNanos after it)
+         * @return false if there is no time left for the submission (or the regex)
+         */
+        boolean startSearch( long submissionDeadline, long regexStartTime ){
+            long now = System.nanoTime();
+            long regexDeadline = regexStartTime + regexTimeoutNanos;
+            if( ( submissionTimeoutNanos > 0 && now - submissionDeadline >= 0 ) || ( regexTimeoutNanos > 0 && now - regexDeadline >= 0 ) ){
+                timeoutCount.incrementAndGet();
+                return false;
+            }
+            if( regexTimeoutNanos == 0 ){
+                deadline = submissionDeadline;
+            }else if( submissionTimeoutNanos == 0 ){
+                deadline = regexDeadline;
+            }else{
+                deadline = ( regexDeadline - submissionDeadline < 0 ) ? regexDeadline : submissionDeadline;
+            }
+            charsUntilCheck = CHARS_PER_DEADLINE_CHECK;
+            return true;
+        }
+
+        public char charAt( int index ){
+            if( --charsUntilCheck <= 0 ){
+                charsUntilCheck = CHARS_PER_DEADLINE_CHECK;
+                if( System.nanoTime() - deadline >= 0 ){
+                    throw new TimeoutException();
+                }
+            }
+            return text.charAt( index );
+        }
+
+        public int length(){
+            return text.length();
+        }
+
+        public CharSequence subSequence( int start, int end ){
+            return text.subSequence( start, end );
+        }
+
+        public String toString(){
+            return text.toString();
+        }
+    }
+}
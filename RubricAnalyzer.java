@@ -0,0 +1,741 @@
+/**
+ * Finds regexes in a rubric that are likely to match too much or to be slow before they are used for grading:
+ *   GREEDY_WILDCARD:       a greedy .* or .+ (or another quantifier of almost any character), which can swallow the text for later items (see README.md)
+ *   NESTED_QUANTIFIER:     a repeated group whose end can be matched by a quantifier inside of it (e.g., (a+)+ or (\w+\s?)+), which can backtrack exponentially
+ *   AMBIGUOUS_ALTERNATION: a repeated group with alternatives that can start with the same character (e.g., (a|aa)+), which can backtrack exponentially
+ *   SLOW:                  the estimated worst-case number of steps to search an output of the given length is more than MAX_STEPS (but not exponential)
+ * The worst case is estimated from the quantifiers: each search can start at any of the characters, each unbounded quantifier can try every
+ * length up to the rest of the line (or the rest of the output if it can match newlines) and each bounded one can try each number of repetitions.
+ * Greedy wildcards can be rewritten to their reluctant form (e.g., .* to .*?).
+ * The regexes are assumed to be valid (i.e., they have already been compiled); anything that is not understood is treated as a literal character.
+ * @author Hyrum D. Carroll
+ * @version 1.0, (Oct 17, 2026)
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.regex.Pattern;
+
+public class RubricAnalyzer{
+
+    public final static long DEFAULT_OUTPUT_LENGTH = 100000; // number of characters of output to estimate the cost for
+    public final static int DEFAULT_LINE_LENGTH = 80;          // number of characters in each line of that output
+    public final static double MAX_STEPS = 1e9;                 // estimated number of steps above which a regex is SLOW
+
+    private final static int NON_ASCII = 128; // index in the character sets for all of the characters that are not US-ASCII
+    private final static int SET_SIZE = 129;
+    private final static int MIN_WIDE_CHARS = 64; // number of printable US-ASCII characters that a "wildcard" can match
+
+    public enum IssueType{
+        GREEDY_WILDCARD,
+        NESTED_QUANTIFIER,
+        AMBIGUOUS_ALTERNATION,
+        SLOW
+    }
+
+    /**
+     * Problem found in a regex
+     */
+    public static class Issue{
+        public final IssueType type;
+        public final int position;   // index in the regex of the end of the quantifier (or -1 for the whole regex)
+        public final String message;
+
+        Issue( IssueType type, int position, String message ){
+            this.type = type;
+            this.position = position;
+            this.message = message;
+        }
+    }
+
+    /**
+     * Results of analyzing one regex
+     */
+    public static class Analysis{
+        public final String regex;
+        public final List<Issue> issues = new ArrayList<Issue>();
+        public double estimatedSteps;  // Double.POSITIVE_INFINITY if exponential
+        private final List<Integer> greedyWildcardEnds = new ArrayList<Integer>(); // index after each greedy wildcard quantifier
+
+        Analysis( String regex ){
+            this.regex = regex;
+        }
+
+        /**
+         * @return true if the regex may backtrack exponentially or is estimated to be SLOW (i.e., anything other than greedy wildcards)
+         */
+        public boolean isSevere(){
+            for( Issue issue : issues ){
+                if( issue.type != IssueType.GREEDY_WILDCARD ){
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @return The regex with each greedy wildcard made reluctant (e.g., .* to .*?)
+         */
+        public String getReluctant(){
+            StringBuilder reluctant = new StringBuilder( regex );
+            for( int i = greedyWildcardEnds.size() - 1; i >= 0; --i){
+                reluctant.insert( (int) greedyWildcardEnds.get(i), '?' );
+            }
+            return reluctant.toString();
+        }
+    }
+
+    private final int flags;
+    private final long outputLength;
+    private final int lineLength;
+
+    /**
+     * Analyzes regexes compiled with the default flags for the default output length
+     */
+    public RubricAnalyzer(){
+        this( RefinedFeedback.DEFAULT_REGEX_FLAGS, DEFAULT_OUTPUT_LENGTH, DEFAULT_LINE_LENGTH );
+    }
+
+    /**
+     * @param flags Flags that the regexes are compiled with
+     * @param outputLength Number of characters of output to estimate the cost of searching
+     * @param lineLength Number of characters in each line of that output
+     */
+    public RubricAnalyzer( int flags, long outputLength, int lineLength ){
+        if( outputLength < 1 || lineLength < 1 ){
+            throw new IllegalArgumentException("Output and line lengths must be at least 1");
+        }
+        this.flags = flags;
+        this.outputLength = outputLength;
+        this.lineLength = (int) Math.min( lineLength, outputLength );
+    }
+
+    /**
+     * @param regexes Ordered list of regular expressions
+     * @return The analysis of each of the regexes
+     */
+    public Analysis[] analyze( String[] regexes ){
+        Analysis[] analyses = new Analysis[ regexes.length ];
+        for(int regexI = 0; regexI < regexes.length; ++regexI){
+            analyses[regexI] = analyze( regexes[regexI] );
+        }
+        return analyses;
+    }
+
+    /**
+     * @param regex Regular expression
+     * @return The issues found in regex and its estimated cost
+     */
+    public Analysis analyze( String regex ){
+        Analysis analysis = new Analysis( regex );
+        Parser parser = new Parser( regex, analysis );
+        Info info = parser.parseAlternation();
+        analysis.estimatedSteps = outputLength * info.factor;
+        if( analysis.estimatedSteps > MAX_STEPS && ! Double.isInfinite( analysis.estimatedSteps ) ){ // (exponential ones already have an issue)
+            analysis.issues.add( new Issue( IssueType.SLOW, -1, "Estimated worst-case steps to search " + outputLength + " characters: " + String.format( "%.1e", analysis.estimatedSteps ) ) );
+        }
+        return analysis;
+    }
+
+    /**
+     * Writes the issues found for each regex (one per line)
+     * @param out Where to write the report
+     * @param analyses Analysis of each regex
+     */
+    public static void writeReport( Appendable out, Analysis[] analyses ) throws IOException{
+        int numIssues = 0;
+        for(int regexI = 0; regexI < analyses.length; ++regexI){
+            Analysis analysis = analyses[regexI];
+            String steps = Double.isInfinite( analysis.estimatedSteps ) ? "exponential" : String.format( "%.1e", analysis.estimatedSteps );
+            out.append( "Regex " + regexI + " (" + analysis.regex + "): estimated worst-case steps " + steps + "\n" );
+            for( Issue issue : analysis.issues ){
+                out.append( "\t" + issue.type + ": " + issue.message + "\n" );
+                ++numIssues;
+            }
+            if( ! analysis.getReluctant().equals( analysis.regex ) ){
+                out.append( "\tReluctant form: " + analysis.getReluctant() + "\n" );
+            }
+        }
+        out.append( numIssues + " issue(s) found in " + analyses.length + " regex(es)\n" );
+    }
+
+    /**
+     * What a part of a regex can match (characters are US-ASCII or NON_ASCII for all others)
+     */
+    private static class Info{
+        BitSet first = new BitSet( SET_SIZE ); // characters that can be matched first
+        BitSet chars = new BitSet( SET_SIZE ); // characters that can be matched anywhere
+        BitSet tail = new BitSet( SET_SIZE );  // characters of unbounded quantifiers that can match at the end
+        boolean nullable = true;               // can match the empty string
+        double factor = 1;                     // (worst-case) number of ways that it can be tried at each position
+        List<Info> alternatives;               // if it is an alternation (e.g., a|b)
+        boolean singleChar;                    // if it matches exactly one character (e.g., . or [^,])
+
+        static Info of( BitSet set ){
+            Info info = new Info();
+            info.first = (BitSet) set.clone();
+            info.chars = (BitSet) set.clone();
+            info.nullable = false;
+            info.singleChar = true;
+            return info;
+        }
+    }
+
+    /**
+     * Recursive-descent parser for (the subset of) java.util.regex.Pattern's syntax that affects the analysis
+     */
+    private class Parser{
+        private final String regex;
+        private final Analysis analysis;
+        private int pos = 0;
+        private boolean ignoreCase;
+        private boolean dotAll;
+        private int atomicDepth = 0; // > 0 inside of an atomic group (which does not backtrack)
+
+        Parser( String regex, Analysis analysis ){
+            this.regex = regex;
+            this.analysis = analysis;
+            this.ignoreCase = (flags & Pattern.CASE_INSENSITIVE) != 0;
+            this.dotAll = (flags & Pattern.DOTALL) != 0;
+        }
+
+        private boolean more(){
+            return pos < regex.length();
+        }
+
+        private char peek(){
+            return regex.charAt( pos );
+        }
+
+        Info parseAlternation(){
+            List<Info> alternatives = new ArrayList<Info>();
+            alternatives.add( parseSequence() );
+            while( more() && peek() == '|' ){
+                ++pos;
+                alternatives.add( parseSequence() );
+            }
+            if( alternatives.size() == 1 ){
+                return alternatives.get(0);
+            }
+            Info info = new Info();
+            info.nullable = false;
+            info.factor = 0;
+            for( Info alternative : alternatives ){
+                info.first.or( alternative.first );
+                info.chars.or( alternative.chars );
+                info.tail.or( alternative.tail );
+                info.nullable |= alternative.nullable;
+                info.factor += alternative.factor;
+            }
+            info.alternatives = alternatives;
+            return info;
+        }
+
+        Info parseSequence(){
+            Info info = new Info();
+            while( more() && peek() != '|' && peek() != ')' ){
+                Info element = parseQuantified();
+                if( info.nullable ){
+                    info.first.or( element.first );
+                }
+                info.chars.or( element.chars );
+                if( element.nullable ){
+                    info.tail.or( element.tail );
+                }else{
+                    info.tail = (BitSet) element.tail.clone();
+                }
+                info.nullable &= element.nullable;
+                info.factor *= element.factor;
+            }
+            return info;
+        }
+
+        Info parseQuantified(){
+            int atomStart = pos;
+            Info atom = parseAtom();
+            if( ! more() ){
+                return atom;
+            }
+            int min;
+            int max; // -1 for unbounded
+            char c = peek();
+            if( c == '*' ){
+                min = 0;
+                max = -1;
+                ++pos;
+            }else if( c == '+' ){
+                min = 1;
+                max = -1;
+                ++pos;
+            }else if( c == '?' ){
+                min = 0;
+                max = 1;
+                ++pos;
+            }else if( c == '{' && regex.indexOf( '}', pos ) > pos ){
+                int close = regex.indexOf( '}', pos );
+                String[] bounds = regex.substring( pos + 1, close ).split( ",", -1 );
+                try{
+                    min = Integer.parseInt( bounds[0].trim() );
+                    max = ( bounds.length == 1 ) ? min : ( bounds[1].trim().length() == 0 ? -1 : Integer.parseInt( bounds[1].trim() ) );
+                }catch( NumberFormatException e ){
+                    return atom; // not a quantifier
+                }
+                pos = close + 1;
+            }else{
+                return atom;
+            }
+            boolean reluctant = false;
+            boolean possessive = false;
+            if( more() && peek() == '?' ){
+                reluctant = true;
+                ++pos;
+            }else if( more() && peek() == '+' ){
+                possessive = true;
+                ++pos;
+            }
+            boolean backtracks = ! possessive && atomicDepth == 0;
+            String quantified = regex.substring( atomStart, pos );
+
+            Info info = new Info();
+            info.first = (BitSet) atom.first.clone();
+            info.chars = (BitSet) atom.chars.clone();
+            info.nullable = atom.nullable || min == 0;
+            info.tail = (BitSet) atom.tail.clone();
+            if( max < 0 ){
+                info.tail.or( atom.chars );
+                if( ! backtracks ){
+                    info.factor = atom.factor;
+                }else if( atom.tail.intersects( atom.first ) ){
+                    // e.g., (a+)+: each repetition can end (and the next one start) at almost any position
+                    analysis.issues.add( new Issue( IssueType.NESTED_QUANTIFIER, pos, quantified + " repeats a quantifier that can match where the next repetition starts, which can backtrack exponentially (make the inner quantifier possessive or the group atomic)" ) );
+                    info.factor = Double.POSITIVE_INFINITY;
+                }else if( atom.alternatives != null && hasOverlappingAlternatives( atom.alternatives ) ){
+                    analysis.issues.add( new Issue( IssueType.AMBIGUOUS_ALTERNATION, pos, quantified + " repeats alternatives that can start with the same character, which can backtrack exponentially" ) );
+                    info.factor = Double.POSITIVE_INFINITY;
+                }else{
+                    int span = atom.chars.get( '\n' ) ? (int) Math.min( outputLength, Integer.MAX_VALUE ) : lineLength;
+                    info.factor = span * atom.factor;
+                }
+                if( backtracks && ! reluctant && atom.singleChar && isWide( atom.chars ) ){
+                    analysis.issues.add( new Issue( IssueType.GREEDY_WILDCARD, pos, quantified + " is greedy, so it can match the text for later items (use " + quantified + "? instead)" ) );
+                    analysis.greedyWildcardEnds.add( pos );
+                }
+            }else{
+                // each number of repetitions from min to max
+                info.factor = ( atom.factor == 1 ) ? ( max - min + 1 ) : Math.pow( atom.factor, max );
+                if( ! backtracks ){
+                    info.factor = atom.factor;
+                }
+            }
+            return info;
+        }
+
+        Info parseAtom(){
+            char c = regex.charAt( pos++ );
+            switch( c ){
+                case '(':
+                    return parseGroup();
+                case '[':
+                    return Info.of( parseClass() );
+                case '.':{
+                    BitSet set = all();
+                    if( ! dotAll ){
+                        set.clear( '\n' );
+                        set.clear( '\r' );
+                    }
+                    return Info.of( set );
+                }
+                case '^':
+                case '$':
+                    return new Info(); // zero-width
+                case '\\':
+                    return parseEscape();
+                default:
+                    return Info.of( charSet( c ) );
+            }
+        }
+
+        Info parseGroup(){
+            boolean atomic = false;
+            boolean lookaround = false;
+            if( more() && peek() == '?' ){
+                ++pos;
+                char kind = more() ? peek() : ')';
+                if( kind == ':' ){
+                    ++pos;
+                }else if( kind == '=' || kind == '!' ){
+                    ++pos;
+                    lookaround = true;
+                }else if( kind == '>' ){
+                    ++pos;
+                    atomic = true;
+                }else if( kind == '<' ){
+                    ++pos;
+                    if( more() && ( peek() == '=' || peek() == '!' ) ){
+                        ++pos;
+                        lookaround = true;
+                    }else{
+                        // named group
+                        int close = regex.indexOf( '>', pos );
+                        pos = ( close < 0 ) ? regex.length() : close + 1;
+                    }
+                }else{
+                    // inline flags, e.g., (?i) or (?s-i:...)
+                    boolean on = true;
+                    while( more() && peek() != ')' && peek() != ':' ){
+                        char flag = regex.charAt( pos++ );
+                        if( flag == '-' ){
+                            on = false;
+                        }else if( flag == 'i' ){
+                            ignoreCase = on;
+                        }else if( flag == 's' ){
+                            dotAll = on;
+                        }
+                    }
+                    if( more() && peek() == ')' ){
+                        ++pos;
+                        return new Info();
+                    }
+                    ++pos; // ':'
+                }
+            }
+            if( atomic ){
+                ++atomicDepth;
+            }
+            Info info = parseAlternation();
+            if( atomic ){
+                --atomicDepth;
+                info.tail.clear(); // an atomic group does not give back what it matched
+                info.factor = Math.min( info.factor, 1 );
+            }
+            if( more() && peek() == ')' ){
+                ++pos;
+            }
+            if( lookaround ){
+                Info zeroWidth = new Info();
+                zeroWidth.factor = info.factor;
+                return zeroWidth;
+            }
+            return info;
+        }
+
+        Info parseEscape(){
+            if( ! more() ){
+                return Info.of( charSet( '\\' ) );
+            }
+            char c = regex.charAt( pos++ );
+            switch( c ){
+                case 'b': case 'B': case 'A': case 'z': case 'Z': case 'G':
+                    return new Info(); // zero-width
+                case 'Q':{
+                    int end = regex.indexOf( "\\E", pos );
+                    if( end < 0 ){
+                        end = regex.length();
+                    }
+                    Info info = new Info();
+                    for( int i = pos; i < end; ++i){
+                        Info literal = Info.of( charSet( regex.charAt(i) ) );
+                        if( info.nullable ){
+                            info.first.or( literal.first );
+                        }
+                        info.chars.or( literal.chars );
+                        info.nullable = false;
+                    }
+                    pos = Math.min( end + 2, regex.length() );
+                    return info;
+                }
+                case 'k':{
+                    // named backreference
+                    int close = regex.indexOf( '>', pos );
+                    pos = ( close < 0 ) ? regex.length() : close + 1;
+                    return Info.of( all() );
+                }
+                case 'R':{
+                    BitSet set = new BitSet( SET_SIZE );
+                    set.set( '\n' );
+                    set.set( '\r' );
+                    set.set( 0x0B );
+                    set.set( '\f' );
+                    set.set( NON_ASCII );
+                    return Info.of( set );
+                }
+                default:
+                    if( c >= '1' && c <= '9' ){
+                        // backreference
+                        while( more() && Character.isDigit( peek() ) ){
+                            ++pos;
+                        }
+                        return Info.of( all() );
+                    }
+                    return Info.of( parseEscapedSet( c ) );
+            }
+        }
+
+        /**
+         * @param c Character after the \ (already consumed)
+         * @return The set of characters matched by the escape sequence (for escapes that match one character)
+         */
+        BitSet parseEscapedSet( char c ){
+            switch( c ){
+                case 'd': return range( '0', '9' );
+                case 'D': return complement( range( '0', '9' ) );
+                case 'w': return wordChars();
+                case 'W': return complement( wordChars() );
+                case 's': return spaceChars();
+                case 'S': return complement( spaceChars() );
+                case 'h':{
+                    BitSet set = charSet( ' ' );
+                    set.set( '\t' );
+                    set.set( NON_ASCII );
+                    return set;
+                }
+                case 'H': return complement( charSet( ' ', '\t' ) );
+                case 'v':{
+                    BitSet set = charSet( '\n', '\r', (char) 0x0B, '\f' );
+                    set.set( NON_ASCII );
+                    return set;
+                }
+                case 'V': return complement( charSet( '\n', '\r', (char) 0x0B, '\f' ) );
+                case 'p':
+                case 'P':{
+                    // Unicode/POSIX class (e.g., \p{Alpha}): approximated as any letter or digit (or anything for \P)
+                    if( more() && peek() == '{' ){
+                        int close = regex.indexOf( '}', pos );
+                        pos = ( close < 0 ) ? regex.length() : close + 1;
+                    }else if( more() ){
+                        ++pos;
+                    }
+                    if( c == 'P' ){
+                        return all();
+                    }
+                    BitSet set = wordChars();
+                    set.set( NON_ASCII );
+                    return set;
+                }
+                default:
+                    return codeSet( parseEscapedCode( c ) );
+            }
+        }
+
+        /**
+         * @param c Character after the \ (already consumed) of an escape for a single character (e.g., \t, \x41 or \.)
+         * @return The code point of that character
+         */
+        int parseEscapedCode( char c ){
+            switch( c ){
+                case 't': return '\t';
+                case 'n': return '\n';
+                case 'r': return '\r';
+                case 'f': return '\f';
+                case 'a': return 7;
+                case 'e': return 27;
+                case 'x':{
+                    int code;
+                    if( more() && peek() == '{' ){
+                        int close = regex.indexOf( '}', pos );
+                        code = parseHex( pos + 1, close );
+                        pos = ( close < 0 ) ? regex.length() : close + 1;
+                    }else{
+                        code = parseHex( pos, Math.min( pos + 2, regex.length() ) );
+                        pos = Math.min( pos + 2, regex.length() );
+                    }
+                    return code;
+                }
+                case 'u':{
+                    int code = parseHex( pos, Math.min( pos + 4, regex.length() ) );
+                    pos = Math.min( pos + 4, regex.length() );
+                    return code;
+                }
+                case '0':{
+                    int code = 0;
+                    int digits = 0;
+                    while( more() && digits < 3 && peek() >= '0' && peek() <= '7' ){
+                        code = code * 8 + ( regex.charAt( pos++ ) - '0' );
+                        ++digits;
+                    }
+                    return code;
+                }
+                case 'c':
+                    if( more() ){
+                        return regex.charAt( pos++ ) ^ 64;
+                    }
+                    return 'c';
+                default:
+                    return c; // escaped metacharacter (e.g., \.)
+            }
+        }
+
+        /**
+         * Parses a character class (the [ has already been consumed) including its closing ]
+         */
+        BitSet parseClass(){
+            boolean negated = false;
+            if( more() && peek() == '^' ){
+                negated = true;
+                ++pos;
+            }
+            BitSet set = parseClassBody( true );
+            if( more() ){
+                ++pos; // ]
+            }
+            return negated ? complement( set ) : set;
+        }
+
+        /**
+         * Parses the items of a character class up to (but not including) its closing ]
+         * @param atStart true if a ] at the start of the items is a literal ]
+         */
+        BitSet parseClassBody( boolean atStart ){
+            BitSet set = new BitSet( SET_SIZE );
+            while( more() && ( peek() != ']' || atStart ) ){
+                atStart = false;
+                if( regex.startsWith( "&&", pos ) ){
+                    // intersection with the rest of the class
+                    pos += 2;
+                    set.and( parseClassBody( false ) );
+                    break;
+                }
+                char c = regex.charAt( pos++ );
+                BitSet item = null;
+                int low = -1; // first character of a possible range
+                if( c == '[' ){
+                    item = parseClass();
+                }else if( c == '\\' && more() ){
+                    char escaped = regex.charAt( pos++ );
+                    if( escaped == 'Q' ){
+                        int end = regex.indexOf( "\\E", pos );
+                        if( end < 0 ){
+                            end = regex.length();
+                        }
+                        item = new BitSet( SET_SIZE );
+                        for( int i = pos; i < end; ++i){
+                            item.or( charSet( regex.charAt(i) ) );
+                        }
+                        pos = Math.min( end + 2, regex.length() );
+                    }else if( "dDwWsShHvVpP".indexOf( escaped ) >= 0 ){
+                        item = parseEscapedSet( escaped );
+                    }else{
+                        low = parseEscapedCode( escaped );
+                    }
+                }else{
+                    low = c;
+                }
+                if( low >= 0 ){
+                    int high = low;
+                    if( pos + 1 < regex.length() && peek() == '-' && regex.charAt( pos + 1 ) != ']' && regex.charAt( pos + 1 ) != '[' ){
+                        // range (e.g., a-z)
+                        ++pos;
+                        char highChar = regex.charAt( pos++ );
+                        high = ( highChar == '\\' && more() ) ? parseEscapedCode( regex.charAt( pos++ ) ) : highChar;
+                    }
+                    item = range( low, high );
+                }
+                set.or( item );
+            }
+            return set;
+        }
+
+        int parseHex( int start, int end ){
+            if( end < start ){
+                return 0;
+            }
+            try{
+                return Math.max( 0, Integer.parseInt( regex.substring( start, end ), 16 ) );
+            }catch( NumberFormatException e ){
+                return 0;
+            }
+        }
+
+        BitSet codeSet( int code ){
+            if( code >= NON_ASCII ){
+                BitSet set = new BitSet( SET_SIZE );
+                set.set( NON_ASCII );
+                return set;
+            }
+            return charSet( (char) code );
+        }
+
+        BitSet charSet( char... cs ){
+            BitSet set = new BitSet( SET_SIZE );
+            for( char c : cs ){
+                if( c >= NON_ASCII ){
+                    set.set( NON_ASCII );
+                }else{
+                    set.set( c );
+                    if( ignoreCase && Character.isLetter( c ) ){
+                        set.set( Character.toLowerCase( c ) );
+                        set.set( Character.toUpperCase( c ) );
+                    }
+                }
+            }
+            return set;
+        }
+
+        BitSet range( int low, int high ){
+            BitSet set = new BitSet( SET_SIZE );
+            for( int c = low; c <= high && c < NON_ASCII; ++c){
+                set.or( charSet( (char) c ) );
+            }
+            if( high >= NON_ASCII ){
+                set.set( NON_ASCII );
+            }
+            return set;
+        }
+    }
+
+    private static BitSet all(){
+        BitSet set = new BitSet( SET_SIZE );
+        set.set( 0, SET_SIZE );
+        return set;
+    }
+
+    private static BitSet complement( BitSet set ){
+        BitSet complement = all();
+        complement.andNot( set );
+        complement.set( NON_ASCII ); // there is always some non-US-ASCII character that is not in set
+        return complement;
+    }
+
+    private static BitSet wordChars(){
+        BitSet set = new BitSet( SET_SIZE );
+        set.set( 'a', 'z' + 1 );
+        set.set( 'A', 'Z' + 1 );
+        set.set( '0', '9' + 1 );
+        set.set( '_' );
+        return set;
+    }
+
+    private static BitSet spaceChars(){
+        BitSet set = new BitSet( SET_SIZE );
+        set.set( ' ' );
+        set.set( '\t' );
+        set.set( '\n' );
+        set.set( 0x0B );
+        set.set( '\f' );
+        set.set( '\r' );
+        return set;
+    }
+
+    /**
+     * @return true if set has almost all of the printable US-ASCII characters (e.g., . or [^,])
+     */
+    private static boolean isWide( BitSet set ){
+        return set.get( ' ', '~' + 1 ).cardinality() >= MIN_WIDE_CHARS;
+    }
+
+    /**
+     * @return true if any two of the alternatives can start with the same character
+     */
+    private static boolean hasOverlappingAlternatives( List<Info> alternatives ){
+        for( int i = 0; i < alternatives.size(); ++i){
+            for( int j = i + 1; j < alternatives.size(); ++j){
+                if( alternatives.get(i).first.intersects( alternatives.get(j).first ) ){
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
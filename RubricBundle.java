@@ -0,0 +1,287 @@
+/**
+ * Precomputed rubric: the regexes, their flags and the strings displayed for missing regexes (from the answer key and explanations),
+ * resolved once and saved to a compact binary file so that grading each submission does not re-read the answer key and explanations.
+ * The answer key and explanations files' sizes and modification times are saved too; if either of them changes, the bundle is
+ * recompiled (and rewritten) automatically when it is loaded.
+ *
+ * File format (all integers are big-endian, all strings are UTF-8 prefixed with their length in bytes):
+ *   MAGIC, VERSION, flags, number of regexes,
+ *   for the answer key and then the explanations: absolute filename (empty if none), size and modification time (longs),
+ *   each regex, each display string, then the CRC-32 of everything before it (as an int)
+ * @author Hyrum D. Carroll
+ * @version 1.0, (Oct 17, 2026)
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+public class RubricBundle{
+
+    public final static int MAGIC = 0x52465242; // "RFRB"
+    public final static int VERSION = 1;
+
+    private final static int NUM_SOURCES = 2; // answer key and explanations (in that order)
+
+    private final String[] regexes;
+    private final int flags;
+    private final String[] answerKeyMatches;  // display string for each regex
+    private final String[] sourceFilenames;   // absolute filenames of the answer key and explanations (null if none)
+    private final long[] sourceSizes;
+    private final long[] sourceModifiedTimes;
+
+    private RubricBundle( String[] regexes, int flags, String[] answerKeyMatches, String[] sourceFilenames, long[] sourceSizes, long[] sourceModifiedTimes ){
+        this.regexes = regexes;
+        this.flags = flags;
+        this.answerKeyMatches = answerKeyMatches;
+        this.sourceFilenames = sourceFilenames;
+        this.sourceSizes = sourceSizes;
+        this.sourceModifiedTimes = sourceModifiedTimes;
+    }
+
+    /**
+     * Resolves the display string for each regex from the answer key and explanations (see RefinedFeedback.loadAnswerKeyMatches())
+     * @param regexes Ordered list of regular expressions
+     * @param answerKeyFilename Filename of the answer key output (or null)
+     * @param explanationsFilename Filename for file with regex explanations (one on each line) (or null)
+     * @return The compiled bundle
+     * @throws IllegalArgumentException if the explanations file can not be read or has more explanations than regexes
+     */
+    public static RubricBundle compile( String[] regexes, String answerKeyFilename, String explanationsFilename ){
+        return compile( regexes, RefinedFeedback.DEFAULT_REGEX_FLAGS, answerKeyFilename, explanationsFilename );
+    }
+
+    /**
+     * Resolves the display string for each regex from the answer key and explanations, matching the regexes with flags
+     * @param regexes Ordered list of regular expressions
+     * @param flags Flags to compile the regexes with
+     * @param answerKeyFilename Filename of the answer key output (or null)
+     * @param explanationsFilename Filename for file with regex explanations (one on each line) (or null)
+     * @return The compiled bundle
+     * @throws IllegalArgumentException if the explanations file can not be read or has more explanations than regexes
+     */
+    public static RubricBundle compile( String[] regexes, int flags, String answerKeyFilename, String explanationsFilename ){
+        String[] sourceFilenames = { answerKeyFilename, explanationsFilename };
+        long[] sourceSizes = new long[ NUM_SOURCES ];
+        long[] sourceModifiedTimes = new long[ NUM_SOURCES ];
+        for( int sourceI = 0; sourceI < NUM_SOURCES; ++sourceI){
+            if( sourceFilenames[sourceI] != null ){
+                // recorded before reading the files, so that a change while compiling is noticed the next time
+                File file = new File( sourceFilenames[sourceI] ).getAbsoluteFile();
+                sourceFilenames[sourceI] = file.getPath();
+                sourceSizes[sourceI] = file.length();
+                sourceModifiedTimes[sourceI] = file.lastModified();
+            }
+        }
+        String[] answerKeyMatches = RefinedFeedback.loadAnswerKeyMatches( regexes, flags, answerKeyFilename, explanationsFilename );
+        if( answerKeyMatches == regexes ){
+            answerKeyMatches = regexes.clone();
+        }
+        return new RubricBundle( regexes.clone(), flags, answerKeyMatches, sourceFilenames, sourceSizes, sourceModifiedTimes );
+    }
+
+    /**
+     * Reads a bundle (memory-mapping the file), recompiling and rewriting it if the answer key or explanations have changed since it was compiled.
+     * If one of them no longer exists, the bundle is used as is.
+     * @param filename Filename of the bundle
+     * @return The (up-to-date) bundle
+     * @throws IOException if the file can not be read
+     * @throws IllegalArgumentException if the file is not a valid bundle
+     */
+    public static RubricBundle load( String filename ) throws IOException{
+        RubricBundle bundle = read( filename );
+        if( bundle.isStale() ){
+            RefinedFeedback.DEBUG( "Recompiling " + filename + " since its answer key or explanations changed" );
+            bundle = compile( bundle.regexes, bundle.flags, bundle.sourceFilenames[0], bundle.sourceFilenames[1] ); // (with the flags it was compiled with)
+            try{
+                bundle.write( filename );
+            }catch( IOException e ){
+                // still use the recompiled bundle (e.g., the directory is read-only)
+                System.err.println("REFINED FEEDBACK ERROR: Unable to update rubric bundle " + filename + ": " + e.getMessage() );
+            }
+        }
+        return bundle;
+    }
+
+    /**
+     * Reads a bundle (memory-mapping the file), without checking if it is stale
+     * @param filename Filename of the bundle
+     * @return The bundle
+     * @throws IOException if the file can not be read
+     * @throws IllegalArgumentException if the file is not a valid bundle
+     */
+    public static RubricBundle read( String filename ) throws IOException{
+        FileChannel channel = FileChannel.open( new File( filename ).toPath(), StandardOpenOption.READ );
+        ByteBuffer buffer;
+        try{
+            buffer = channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+        }finally{
+            channel.close(); // the mapping stays valid after the channel is closed
+        }
+
+        try{
+            if( buffer.getInt() != MAGIC ){
+                throw new IllegalArgumentException( filename + " is not a rubric bundle" );
+            }
+            int version = buffer.getInt();
+            if( version != VERSION ){
+                throw new IllegalArgumentException( filename + " is a version " + version + " rubric bundle (expected version " + VERSION + ")" );
+            }
+
+            // verify the checksum before trusting any of the lengths
+            if( buffer.limit() < 12 ){
+                throw new BufferUnderflowException();
+            }
+            CRC32 crc = new CRC32();
+            ByteBuffer contents = buffer.duplicate();
+            contents.position( 0 );
+            contents.limit( buffer.limit() - 4 );
+            crc.update( contents );
+            if( (int) crc.getValue() != buffer.getInt( buffer.limit() - 4 ) ){
+                throw new IllegalArgumentException( filename + " is corrupt (checksum mismatch)" );
+            }
+
+            int flags = buffer.getInt();
+            int numRegexes = buffer.getInt();
+            if( numRegexes < 0 || numRegexes > buffer.remaining() / 8 ){ // each regex and display string has (at least) its length
+                throw new IllegalArgumentException( filename + " is corrupt (invalid number of regexes)" );
+            }
+            String[] sourceFilenames = new String[ NUM_SOURCES ];
+            long[] sourceSizes = new long[ NUM_SOURCES ];
+            long[] sourceModifiedTimes = new long[ NUM_SOURCES ];
+            for( int sourceI = 0; sourceI < NUM_SOURCES; ++sourceI){
+                String sourceFilename = readString( buffer );
+                sourceFilenames[sourceI] = ( sourceFilename.length() > 0 ) ? sourceFilename : null;
+                sourceSizes[sourceI] = buffer.getLong();
+                sourceModifiedTimes[sourceI] = buffer.getLong();
+            }
+            String[] regexes = new String[ numRegexes ];
+            for(int regexI = 0; regexI < numRegexes; ++regexI){
+                regexes[regexI] = readString( buffer );
+            }
+            String[] answerKeyMatches = new String[ numRegexes ];
+            for(int regexI = 0; regexI < numRegexes; ++regexI){
+                answerKeyMatches[regexI] = readString( buffer );
+            }
+            return new RubricBundle( regexes, flags, answerKeyMatches, sourceFilenames, sourceSizes, sourceModifiedTimes );
+        }catch( BufferUnderflowException e ){
+            throw new IllegalArgumentException( filename + " is corrupt (truncated)" );
+        }
+    }
+
+    private static String readString( ByteBuffer buffer ){
+        int length = buffer.getInt();
+        if( length < 0 || length > buffer.remaining() ){
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[ length ];
+        buffer.get( bytes );
+        return new String( bytes, StandardCharsets.UTF_8 );
+    }
+
+    /**
+     * Writes the bundle (to a temporary file that then replaces filename, so that a partially written bundle is never read)
+     * @param filename Filename of the bundle
+     */
+    public void write( String filename ) throws IOException{
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream( bytes );
+        out.writeInt( MAGIC );
+        out.writeInt( VERSION );
+        out.writeInt( flags );
+        out.writeInt( regexes.length );
+        for( int sourceI = 0; sourceI < NUM_SOURCES; ++sourceI){
+            writeString( out, ( sourceFilenames[sourceI] != null ) ? sourceFilenames[sourceI] : "" );
+            out.writeLong( sourceSizes[sourceI] );
+            out.writeLong( sourceModifiedTimes[sourceI] );
+        }
+        for( String regex : regexes ){
+            writeString( out, regex );
+        }
+        for( String answerKeyMatch : answerKeyMatches ){
+            writeString( out, answerKeyMatch );
+        }
+        CRC32 crc = new CRC32();
+        crc.update( bytes.toByteArray() );
+        out.writeInt( (int) crc.getValue() );
+        out.flush();
+
+        File file = new File( filename ).getAbsoluteFile();
+        File tempFile = File.createTempFile( file.getName(), ".tmp", file.getParentFile() );
+        try{
+            BufferedOutputStream fileOut = new BufferedOutputStream( new FileOutputStream( tempFile ) );
+            try{
+                bytes.writeTo( fileOut );
+            }finally{
+                fileOut.close();
+            }
+            if( ! tempFile.renameTo( file ) ){
+                // e.g., Windows does not replace existing files
+                if( ! file.delete() || ! tempFile.renameTo( file ) ){
+                    throw new IOException("Unable to replace " + filename );
+                }
+            }
+        }finally{
+            tempFile.delete(); // nothing to delete if it was renamed
+        }
+    }
+
+    private static void writeString( DataOutputStream out, String str ) throws IOException{
+        byte[] bytes = str.getBytes( StandardCharsets.UTF_8 );
+        out.writeInt( bytes.length );
+        out.write( bytes );
+    }
+
+    /**
+     * @return true if the answer key or explanations have changed (and still exist) since the bundle was compiled
+     */
+    public boolean isStale(){
+        for( int sourceI = 0; sourceI < NUM_SOURCES; ++sourceI){
+            if( sourceFilenames[sourceI] == null ){
+                continue;
+            }
+            File file = new File( sourceFilenames[sourceI] );
+            if( file.exists() && ( file.length() != sourceSizes[sourceI] || file.lastModified() != sourceModifiedTimes[sourceI] ) ){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return A copy of the regexes
+     */
+    public String[] getRegexes(){
+        return regexes.clone();
+    }
+
+    /**
+     * @return The flags to compile the regexes with
+     */
+    public int getFlags(){
+        return flags;
+    }
+
+    /**
+     * @return A copy of the strings to display for each regex if it is missing
+     */
+    public String[] getAnswerKeyMatches(){
+        return answerKeyMatches.clone();
+    }
+
+    /**
+     * @return The compiled regexes
+     */
+    public Rubric toRubric(){
+        return new Rubric( regexes, flags );
+    }
+}
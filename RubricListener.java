@@ -0,0 +1,39 @@
+/**
+ * Receives timings and counts from a Rubric as it searches submissions (see Rubric.withListener() and MatchStatistics).
+ * Rubrics without a listener do not read the clock, so instrumentation only costs anything when a listener is attached.
+ * Methods can be called by multiple threads at the same time (e.g., when grading a batch of submissions).
+ * @author Hyrum D. Carroll
+ * @version 1.0, (Oct 17, 2026)
+ */
+
+public interface RubricListener{
+
+    /**
+     * Called before the regexes are searched for in a submission (by the grader, e.g., BatchGrader, so that the statistics can name it)
+     * @param name Name of the submission (e.g., its filename)
+     */
+    void submissionStarted( String name );
+
+    /**
+     * Called after each search for a regex (a regex can be searched for more than once per submission with Rubric.Engine.ALIGN)
+     * @param regexI Index of the regex
+     * @param nanos Time spent searching
+     * @param charsScanned Number of characters from the start of the search to the end of the match (or to the end of the text if it was not found)
+     */
+    void regexSearched( int regexI, long nanos, long charsScanned );
+
+    /**
+     * Called after all of the regexes have been searched for in a submission
+     * @param textLength Number of characters in the submission
+     * @param indices First and last indices of the matches (see Rubric.getMatchingIndices())
+     * @param nanos Time spent finding all of the matches
+     */
+    void submissionMatched( int textLength, int[][] indices, long nanos );
+
+    /**
+     * Called after the annotated view of a submission has been written (see RefinedFeedback.writeFeedback())
+     * @param textLength Number of characters in the submission
+     * @param nanos Time spent writing the annotated view
+     */
+    void submissionRendered( int textLength, long nanos );
+}
@@ -0,0 +1,286 @@
+/**
+ * Splits the output of an interactive program into segments with the input it was given on stdin, so that each regex is only searched for
+ * in the segment of the output that it belongs to (instead of all of the output, which is missing the newlines from stdin, so that
+ * greedy regexes like "length.+as a number" can match across prompts, see README.md).
+ * Segment 0 is the output before the first input is read, and segment i is the output after the ith input line is read (i.e., from its echo point).
+ * The echo point of an input line is where the output repeats it at the end of a line (e.g., "You entered: Mario", as in exampleOutput-cpsc1302-project4.txt),
+ * and the segment starts at the beginning of that line.  Each echo is searched for after the previous one.
+ * For input that is not echoed, the segment starts after the first prompt (": ", "? " or "> ") that is followed by more output on the same line
+ * (e.g., "Please enter the length as a number: Please enter the width as a number: ") between the echoes on either side of it.
+ * If neither is found for an input line, then its segment is merged with the previous one.
+ * The segment of each regex is the first one (in order, after the previous regex's) that it is found in by itself in the answer key
+ * (or in the output itself, if there is no answer key).  Regexes that are not found in any one segment are searched for in all of the output.
+ * @author Hyrum D. Carroll
+ * @version 1.0, (Oct 17, 2026)
+ */
+
+public class Transcript{
+
+    public final static int NO_SEGMENT = -1; // segment for a regex that is searched for in all of the output
+
+    private final String[] inputs; // each line of stdin (trimmed)
+
+    /**
+     * @param inputs Each line of the program's stdin
+     */
+    public Transcript( String[] inputs ){
+        this.inputs = new String[ inputs.length ];
+        for( int i = 0; i < inputs.length; ++i){
+            this.inputs[i] = inputs[i].trim();
+        }
+    }
+
+    /**
+     * Reads the program's stdin from a file
+     * @param stdinFilename Filename of the input that was given to the program
+     * @return The transcript
+     * @throws IllegalArgumentException if the file can not be read
+     */
+    public static Transcript read( String stdinFilename ){
+        String contents = RefinedFeedback.getAllInput( stdinFilename );
+        if( contents == null ){
+            throw new IllegalArgumentException("Unable to read stdin file " + stdinFilename );
+        }
+        if( contents.length() == 0 ){
+            return new Transcript( new String[0] );
+        }
+        return new Transcript( contents.split( "\r?\n" ) ); // (without the empty string after the last line separator)
+    }
+
+    /**
+     * @return The number of segments (one more than the number of input lines)
+     */
+    public int getNumSegments(){
+        return inputs.length + 1;
+    }
+
+    /**
+     * Finds the start of each segment of output
+     * @param output Output of the program (stdout only)
+     * @return The index of the first character of each segment (or -1 if the input line for it was not found)
+     */
+    public int[] findSegmentStarts( CharSequence output ){
+        int[] starts = new int[ getNumSegments() ];
+        starts[0] = 0;
+        // echo points
+        int searchIndex = 0;
+        for( int inputI = 0; inputI < inputs.length; ++inputI){
+            int echoIndex = findEcho( output, inputs[inputI], searchIndex );
+            if( echoIndex < 0 ){
+                starts[ inputI + 1 ] = -1;
+                continue;
+            }
+            int lineStart = echoIndex;
+            while( lineStart > 0 && output.charAt( lineStart - 1 ) != '\n' && output.charAt( lineStart - 1 ) != '\r' ){
+                --lineStart;
+            }
+            starts[ inputI + 1 ] = Math.max( lineStart, searchIndex ); // (the previous echo may be on the same line)
+            searchIndex = echoIndex + inputs[inputI].length();
+        }
+        // prompts (for input that is not echoed), between the segments on either side
+        int previousStart = 0;
+        for( int segmentI = 1; segmentI < starts.length; ++segmentI){
+            if( starts[segmentI] >= 0 ){
+                previousStart = starts[segmentI];
+                continue;
+            }
+            int nextStart = output.length();
+            for( int nextI = segmentI + 1; nextI < starts.length; ++nextI){
+                if( starts[nextI] >= 0 ){
+                    nextStart = starts[nextI];
+                    break;
+                }
+            }
+            int promptEnd = findPromptEnd( output, previousStart, nextStart );
+            if( promptEnd >= 0 ){
+                starts[segmentI] = promptEnd;
+                previousStart = promptEnd;
+            }
+        }
+        return starts;
+    }
+
+    /**
+     * @return The index of the first occurrence of input at or after fromIndex that is a whole word at the end of a line (or -1 if there is none)
+     */
+    private static int findEcho( CharSequence output, String input, int fromIndex ){
+        if( input.length() == 0 ){
+            return -1; // an empty line can not be found
+        }
+        int limit = output.length() - input.length();
+        for( int i = fromIndex; i <= limit; ++i){
+            if( ! regionMatches( output, i, input ) ){
+                continue;
+            }
+            if( i > 0 && Character.isLetterOrDigit( input.charAt(0) ) && Character.isLetterOrDigit( output.charAt( i - 1 ) ) ){
+                continue; // e.g., "12" in "112"
+            }
+            int after = i + input.length();
+            while( after < output.length() && ( output.charAt( after ) == ' ' || output.charAt( after ) == '\t' ) ){
+                ++after;
+            }
+            if( after == output.length() || output.charAt( after ) == '\n' || output.charAt( after ) == '\r' ){
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean regionMatches( CharSequence output, int offset, String input ){
+        for( int j = 0; j < input.length(); ++j){
+            if( output.charAt( offset + j ) != input.charAt(j) ){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The index after the first prompt in output[fromIndex, toIndex) that is followed by more output on the same line (or -1 if there is none)
+     */
+    private static int findPromptEnd( CharSequence output, int fromIndex, int toIndex ){
+        for( int i = fromIndex; i + 1 < toIndex; ++i){
+            char c = output.charAt(i);
+            if( ( c != ':' && c != '?' && c != '>' ) || ( output.charAt( i + 1 ) != ' ' && output.charAt( i + 1 ) != '\t' ) ){
+                continue;
+            }
+            int next = i + 1;
+            while( next < toIndex && ( output.charAt( next ) == ' ' || output.charAt( next ) == '\t' ) ){
+                ++next;
+            }
+            if( next < toIndex && output.charAt( next ) != '\n' && output.charAt( next ) != '\r' ){
+                return next;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param segmentStarts Start of each segment (see findSegmentStarts())
+     * @param segmentI Index of a segment
+     * @param textLength Length of the output
+     * @return The first index and the index after the last character of the segment (including any segments merged into it)
+     */
+    public static int[] getRegion( int[] segmentStarts, int segmentI, int textLength ){
+        int start = 0;
+        for( int i = segmentI; i >= 0; --i){
+            if( segmentStarts[i] >= 0 ){
+                start = segmentStarts[i];
+                break;
+            }
+        }
+        int end = textLength;
+        for( int i = segmentI + 1; i < segmentStarts.length; ++i){
+            if( segmentStarts[i] >= 0 ){
+                end = segmentStarts[i];
+                break;
+            }
+        }
+        return new int[]{ start, Math.max( start, end ) };
+    }
+
+    /**
+     * Finds the segment of each regex: the first one (after the previous regex's match) that it is found in by itself
+     * @param rubric Compiled regexes
+     * @param text Output to find the segments in (e.g., the answer key)
+     * @return The index of the segment of each regex (or NO_SEGMENT if it is not found in any one segment)
+     */
+    public int[] getSegments( Rubric rubric, CharSequence text ){
+        int[] segments = new int[ rubric.size() ];
+        findSegments( rubric, text, segments );
+        return segments;
+    }
+
+    /**
+     * Finds the segment of each regex (see getSegments()) along with its match in text (i.e., the same indices as
+     * getMatchingIndices( rubric, segments, text ), without searching text again)
+     * @param rubric Compiled regexes
+     * @param text Output to find the segments in (e.g., the answer key)
+     * @param segments Set to the index of the segment of each regex (or NO_SEGMENT if it is not found in any one segment)
+     * @return Indices in the same format as Rubric.getMatchingIndices()
+     */
+    public int[][] findSegments( Rubric rubric, CharSequence text, int[] segments ){
+        int[] segmentStarts = findSegmentStarts( text );
+        int[][] matches = new int[ rubric.size() ][];
+        int segmentI = 0;
+        int searchIndex = 0;
+        for(int regexI = 0; regexI < rubric.size(); ++regexI){
+            segments[regexI] = NO_SEGMENT;
+            // a match in a segment is also a match in the rest of text (see Rubric.find()), so the first match in the rest of text is the first one
+            // in a segment, unless it spans more than one segment
+            int[] match = rubric.find( regexI, text, searchIndex, text.length() );
+            if( match[0] >= 0 ){
+                segments[regexI] = getSegment( segmentStarts, segmentI, match, text.length() );
+                for( int i = segmentI; segments[regexI] == NO_SEGMENT && i < segmentStarts.length; ++i){
+                    if( i > 0 && segmentStarts[i] < 0 ){
+                        continue; // merged into the previous segment
+                    }
+                    int[] region = getRegion( segmentStarts, i, text.length() );
+                    int[] segmentMatch = rubric.find( regexI, text, Math.max( searchIndex, region[0] ), region[1] );
+                    if( segmentMatch[0] >= 0 ){
+                        segments[regexI] = i;
+                        match = segmentMatch;
+                    }
+                }
+                if( segments[regexI] != NO_SEGMENT ){
+                    segmentI = segments[regexI];
+                }
+                searchIndex = match[1] + 1;
+            }
+            matches[regexI] = match;
+        }
+        return matches;
+    }
+
+    /**
+     * @return The first segment (at or after segmentI) that match is entirely in (or NO_SEGMENT if there is none)
+     */
+    private static int getSegment( int[] segmentStarts, int segmentI, int[] match, int textLength ){
+        for( int i = segmentI; i < segmentStarts.length; ++i){
+            if( i > 0 && segmentStarts[i] < 0 ){
+                continue; // merged into the previous segment
+            }
+            int[] region = getRegion( segmentStarts, i, textLength );
+            if( match[0] >= region[0] && match[1] < region[1] ){
+                return i;
+            }
+        }
+        return NO_SEGMENT;
+    }
+
+    /**
+     * @param segments Segment of each regex (see getSegments())
+     * @param output Output of the program
+     * @return The region of output for each regex (or null to search all of output), for Rubric.getMatchingIndices( CharSequence, int[][] )
+     */
+    public int[][] getRegions( int[] segments, CharSequence output ){
+        int[] segmentStarts = findSegmentStarts( output );
+        int[][] regions = new int[ segments.length ][];
+        for(int regexI = 0; regexI < segments.length; ++regexI){
+            if( segments[regexI] != NO_SEGMENT ){
+                regions[regexI] = getRegion( segmentStarts, segments[regexI], output.length() );
+            }
+        }
+        return regions;
+    }
+
+    /**
+     * Finds the matches for each regex in its segment of output
+     * @param rubric Compiled regexes
+     * @param segments Segment of each regex (see getSegments(), e.g., with the answer key), or null to find them in output itself
+     * @param output Output of the program
+     * @return Indices in the same format as Rubric.getMatchingIndices()
+     */
+    public int[][] getMatchingIndices( Rubric rubric, int[] segments, CharSequence output ){
+        if( segments != null ){
+            return rubric.getMatchingIndices( output, getRegions( segments, output ) );
+        }
+        // the segments are found with the matches themselves (instead of searching output again)
+        long startTime = System.nanoTime();
+        int[][] matches = findSegments( rubric, output, new int[ rubric.size() ] );
+        if( rubric.getListener() != null ){
+            rubric.getListener().submissionMatched( output.length(), matches, System.nanoTime() - startTime );
+        }
+        return matches;
+    }
+}